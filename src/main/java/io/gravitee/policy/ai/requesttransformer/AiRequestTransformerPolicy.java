@@ -19,24 +19,47 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.gravitee.common.http.HttpStatusCode;
-import io.gravitee.el.TemplateEngine;
 import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
 import io.gravitee.gateway.reactive.api.ExecutionFailure;
 import io.gravitee.gateway.reactive.api.ExecutionWarn;
 import io.gravitee.gateway.reactive.api.context.http.HttpPlainExecutionContext;
 import io.gravitee.gateway.reactive.api.policy.http.HttpPolicy;
+import io.gravitee.policy.ai.requesttransformer.batch.TransformationBatcher;
+import io.gravitee.policy.ai.requesttransformer.cache.TransformationResultCache;
 import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration;
 import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration.TargetMode;
 import io.gravitee.policy.ai.requesttransformer.configuration.ErrorMode;
+import io.gravitee.policy.ai.requesttransformer.llm.ConcurrencyLimiter;
+import io.gravitee.policy.ai.requesttransformer.llm.EndpointCircuitBreaker;
 import io.gravitee.policy.ai.requesttransformer.llm.EndpointGroupResolver;
+import io.gravitee.policy.ai.requesttransformer.llm.RequestHedger;
 import io.gravitee.policy.ai.requesttransformer.llm.ResolvedEndpoint;
+import io.gravitee.policy.ai.requesttransformer.llm.RetryPolicy;
+import io.gravitee.policy.ai.requesttransformer.llm.TokenBudget;
 import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient;
+import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient.LlmResponseTooLargeException;
+import io.gravitee.policy.ai.requesttransformer.targeting.TargetPath;
+import io.gravitee.policy.ai.requesttransformer.template.PromptTemplate;
 import io.gravitee.policy.api.annotations.OnRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.vertx.core.Vertx;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,13 +69,27 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
     "long_ai-request-transformer_transformed-count";
   static final String METRIC_TRANSFORM_TIME_MS =
     "long_ai-request-transformer_processing-time-ms";
+  static final String METRIC_CACHE_HIT_COUNT =
+    "long_ai-request-transformer_cache-hit-count";
+  static final String METRIC_CACHE_MISS_COUNT =
+    "long_ai-request-transformer_cache-miss-count";
+  static final String METRIC_CIRCUIT_STATE =
+    "keyword_ai-request-transformer_llm-circuit-state";
+  static final String METRIC_CONCURRENCY_LIMIT =
+    "long_ai-request-transformer_llm-concurrency-limit";
+  static final String METRIC_IN_FLIGHT =
+    "long_ai-request-transformer_llm-in-flight";
+  static final String METRIC_QUEUE_DEPTH =
+    "long_ai-request-transformer_llm-queue-depth";
+  static final String METRIC_TOKENS_AVAILABLE =
+    "long_ai-request-transformer_llm-tokens-available";
 
   private static final String WARN_KEY_FAIL_OPEN =
     "AI_REQUEST_TRANSFORMER_FAIL_OPEN";
   private static final String FAILURE_KEY =
     "AI_REQUEST_TRANSFORMER_BAD_REQUEST";
-  private static final String TEMPLATE_MARKER_OPEN = "{#";
-  private static final String TEMPLATE_MARKER_OPEN_ALT = "${";
+  private static final String LLM_RESPONSE_TOO_LARGE =
+    "LLM response exceeds configured maxLlmResponseBodySize.";
 
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
@@ -63,6 +100,13 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
   private final AiRequestTransformerPolicyConfiguration configuration;
   private final EndpointGroupResolver endpointResolver;
   private final TransformerLlmClient llmClient;
+  private final TransformationResultCache resultCache;
+  private final TransformationBatcher batcher;
+  private final PromptTemplate promptTemplate;
+  private final String llmSourceKey;
+  private final List<TargetPath> targetPaths;
+  private final String targetPathError;
+  private volatile boolean vertxResolved;
 
   public AiRequestTransformerPolicy(
     AiRequestTransformerPolicyConfiguration configuration
@@ -84,6 +128,51 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
       : configuration;
     this.endpointResolver = endpointResolver;
     this.llmClient = llmClient;
+    this.resultCache = createResultCache(this.configuration.getResultCache());
+    this.batcher = createBatcher(llmClient, this.configuration.getBatching());
+    this.promptTemplate = PromptTemplate.compile(this.configuration.getPrompt());
+    configureHedging(llmClient, this.configuration);
+    configureCircuitBreaker(
+      llmClient,
+      this.configuration.getCircuitBreaker()
+    );
+    configureConcurrencyLimit(
+      llmClient,
+      this.configuration.getConcurrencyLimit()
+    );
+    configureTokenBudget(llmClient, this.configuration.getTokenBudget());
+    configureRetry(llmClient, this.configuration.getRetry());
+    this.llmSourceKey = llmSourceKey(this.configuration);
+
+    List<TargetPath> compiledPaths = null;
+    String compileError = null;
+    try {
+      compiledPaths = compileTargetPaths(this.configuration);
+    } catch (IllegalArgumentException e) {
+      compileError = e.getMessage();
+    }
+    this.targetPaths = compiledPaths;
+    this.targetPathError = compileError;
+  }
+
+  private static List<TargetPath> compileTargetPaths(
+    AiRequestTransformerPolicyConfiguration configuration
+  ) {
+    List<String> expressions = configuration.getTargetPaths();
+    if (expressions == null || expressions.isEmpty()) {
+      return List.of(TargetPath.compile(configuration.getTargetPath()));
+    }
+
+    List<TargetPath> paths = expressions
+      .stream()
+      .map(TargetPath::compile)
+      .toList();
+    if (paths.size() > 1 && paths.stream().anyMatch(TargetPath::isRoot)) {
+      throw new IllegalArgumentException(
+        "Root target path '$' cannot be combined with other target paths."
+      );
+    }
+    return paths;
   }
 
   @Override
@@ -94,14 +183,18 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
   @OnRequest
   @Override
   public Completable onRequest(HttpPlainExecutionContext ctx) {
-    return ctx
-      .request()
-      .onBody(onBody ->
-        onBody
-          .switchIfEmpty(Maybe.just(Buffer.buffer()))
-          .flatMap(body -> Maybe.fromCallable(() -> transformBody(ctx, body)))
-      )
-      .onErrorResumeNext(throwable -> {
+    return Completable.defer(() -> {
+      useGatewayVertx(ctx);
+      if (declaresOversizedBody(ctx)) {
+        // The body is left untouched and streams to the backend unbuffered.
+        skipOversizedBody(ctx, System.nanoTime());
+        return Completable.complete();
+      }
+
+      return ctx
+        .request()
+        .onChunks(chunks -> aggregateWithinLimit(ctx, chunks));
+    }).onErrorResumeNext(throwable -> {
         if (throwable instanceof TransformationFailureException e) {
           return ctx.interruptWith(
             new ExecutionFailure(HttpStatusCode.BAD_REQUEST_400)
@@ -114,118 +207,476 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
       });
   }
 
-  private Buffer transformBody(
-    HttpPlainExecutionContext ctx,
-    Buffer originalBody
-  ) throws Exception {
-    long startedAt = System.nanoTime();
-    boolean transformed = false;
+  /**
+   * Hands the gateway Vert.x instance to the LLM client on the first request,
+   * so calls run on the gateway event loops. Without one the JDK client is
+   * kept.
+   */
+  private void useGatewayVertx(HttpPlainExecutionContext ctx) {
+    if (vertxResolved) {
+      return;
+    }
 
     try {
-      int maxBodySize = configuration.getMaxRequestBodySize();
-      if (maxBodySize > 0 && originalBody.length() > maxBodySize) {
-        handleUntransformable(
-          ctx,
-          "Request body size exceeds configured maxRequestBodySize."
+      Vertx vertx = ctx.getComponent(Vertx.class);
+      if (vertx == null) {
+        io.vertx.rxjava3.core.Vertx rxVertx = ctx.getComponent(
+          io.vertx.rxjava3.core.Vertx.class
         );
-        return originalBody;
+        vertx = rxVertx == null ? null : rxVertx.getDelegate();
       }
-
-      String originalPayload = originalBody.toString();
-      TargetingContext targeting = resolveTargeting(ctx, originalPayload);
-      if (targeting.skipTransformation()) {
-        return originalBody;
+      // Not marked resolved until Vert.x is found, so later requests look it
+      // up again.
+      if (vertx != null) {
+        llmClient.useVertx(vertx);
+        vertxResolved = true;
       }
+    } catch (Exception e) {
+      LOGGER.debug("Vert.x is not available, using the JDK HTTP client.", e);
+    }
+  }
 
-      ResolvedEndpoint endpoint = endpointResolver.resolve(ctx, configuration);
-      if (endpoint == null) {
-        handleUntransformable(ctx, "No LLM endpoint could be resolved.");
-        return originalBody;
-      }
+  private boolean declaresOversizedBody(HttpPlainExecutionContext ctx) {
+    int maxBodySize = configuration.getMaxRequestBodySize();
+    if (maxBodySize <= 0) {
+      return false;
+    }
 
-      String prompt = renderTemplate(ctx, configuration.getPrompt());
-      String transformedBody;
-      try {
-        transformedBody = configuration.isUseOpenAiJsonResponseFormat()
-          ? llmClient.transform(
-            endpoint,
-            prompt,
-            targeting.inputForLlm(),
-            configuration.getLlmTimeoutMs(),
-            true
+    String contentLength = ctx
+      .request()
+      .headers()
+      .get(HttpHeaderNames.CONTENT_LENGTH);
+    if (contentLength == null) {
+      return false;
+    }
+
+    try {
+      return Long.parseLong(contentLength.trim()) > maxBodySize;
+    } catch (NumberFormatException e) {
+      // Left to the byte counter.
+      return false;
+    }
+  }
+
+  /**
+   * Aggregates the request chunks and transforms the body. Chunks are counted
+   * while they arrive: once maxRequestBodySize is crossed the held chunks are
+   * released and the rest of the body streams through without buffering.
+   */
+  private Flowable<Buffer> aggregateWithinLimit(
+    HttpPlainExecutionContext ctx,
+    Flowable<Buffer> chunks
+  ) {
+    return Flowable.defer(() -> {
+      long startedAt = System.nanoTime();
+      BodyAggregator body = new BodyAggregator(
+        configuration.getMaxRequestBodySize()
+      );
+      return chunks
+        .concatMap(chunk -> {
+          if (body.overflowed()) {
+            return Flowable.just(chunk);
+          }
+          if (body.add(chunk)) {
+            return Flowable.<Buffer>empty();
+          }
+
+          skipOversizedBody(ctx, startedAt);
+          return Flowable.fromIterable(body.release());
+        })
+        .concatWith(
+          Maybe.defer(() ->
+            body.overflowed()
+              ? Maybe.<Buffer>empty()
+              : transformBody(ctx, body.aggregate())
           )
-          : llmClient.transform(
-            endpoint,
-            prompt,
-            targeting.inputForLlm(),
-            configuration.getLlmTimeoutMs()
-          );
-      } catch (Exception e) {
-        handleUntransformable(
+        );
+    });
+  }
+
+  private void skipOversizedBody(
+    HttpPlainExecutionContext ctx,
+    long startedAtNanos
+  ) {
+    recordMetrics(ctx, startedAtNanos, false);
+    handleUntransformable(
+      ctx,
+      "Request body size exceeds configured maxRequestBodySize."
+    );
+  }
+
+  private Maybe<Buffer> transformBody(
+    HttpPlainExecutionContext ctx,
+    Buffer originalBody
+  ) {
+    return Maybe.defer(() -> {
+      long startedAt = System.nanoTime();
+      // Every non-transforming outcome hands back the original buffer instance.
+      return Maybe.defer(() ->
+        transformOrPassThrough(ctx, originalBody)
+      ).doOnEvent((result, throwable) ->
+        recordMetrics(
           ctx,
-          "LLM call failed: " +
-            (e.getMessage() == null
-                ? e.getClass().getSimpleName()
-                : e.getMessage())
+          startedAt,
+          result != null && result != originalBody
+        )
+      );
+    });
+  }
+
+  private Maybe<Buffer> transformOrPassThrough(
+    HttpPlainExecutionContext ctx,
+    Buffer originalBody
+  ) {
+    TargetingContext targeting = resolveTargeting(ctx, originalBody);
+    if (targeting.skipTransformation()) {
+      return Maybe.just(originalBody);
+    }
+
+    String prompt = renderPrompt(ctx);
+    if (isFanOut(targeting)) {
+      return endpointResolver
+        .resolve(ctx, configuration)
+        .flatMapSingle(endpoint ->
+          transformFanOut(ctx, originalBody, targeting, endpoint, prompt)
+        )
+        .switchIfEmpty(
+          Single.fromCallable(() -> {
+            handleUntransformable(ctx, "No LLM endpoint could be resolved.");
+            return originalBody;
+          })
+        )
+        .toMaybe();
+    }
+
+    String cacheKey = null;
+    if (resultCache != null) {
+      cacheKey = TransformationResultCache.key(
+        llmSourceKey,
+        String.valueOf(configuration.isUseOpenAiJsonResponseFormat()),
+        prompt,
+        targeting.inputForLlm()
+      );
+      String cached = resultCache.get(cacheKey);
+      recordCacheMetrics(ctx, cached != null);
+      if (cached != null) {
+        // A hit skips endpoint resolution and the LLM call altogether.
+        return Maybe.fromCallable(() ->
+          applyLlmOutput(ctx, originalBody, targeting, cached)
         );
-        return originalBody;
       }
+    }
 
-      if (transformedBody == null || transformedBody.isBlank()) {
-        handleUntransformable(ctx, "LLM returned an empty transformation.");
-        return originalBody;
-      }
+    String resultCacheKey = cacheKey;
+    return endpointResolver
+      .resolve(ctx, configuration)
+      .flatMapSingle(endpoint ->
+        transformWithEndpoint(
+          ctx,
+          originalBody,
+          targeting,
+          endpoint,
+          prompt,
+          resultCacheKey
+        )
+      )
+      .switchIfEmpty(
+        Single.fromCallable(() -> {
+          handleUntransformable(ctx, "No LLM endpoint could be resolved.");
+          return originalBody;
+        })
+      )
+      .toMaybe();
+  }
 
-      byte[] transformedBytes = transformedBody.getBytes(
-        StandardCharsets.UTF_8
-      );
-      int maxLlmResponseBodySize = configuration.getMaxLlmResponseBodySize();
-      if (
-        maxLlmResponseBodySize > 0 &&
-        transformedBytes.length > maxLlmResponseBodySize
-      ) {
-        handleUntransformable(
+  private boolean isFanOut(TargetingContext targeting) {
+    AiRequestTransformerPolicyConfiguration.FanOut fanOut =
+      configuration.getFanOut();
+    return (
+      fanOut != null &&
+      fanOut.isEnabled() &&
+      targeting.targetingEnabled() &&
+      targeting.targetMode() == TargetMode.REPLACE_TARGET &&
+      targeting.targets().size() == 1 &&
+      !targeting.targets().get(0).path().isDefinite()
+    );
+  }
+
+  private Single<Buffer> transformWithEndpoint(
+    HttpPlainExecutionContext ctx,
+    Buffer originalBody,
+    TargetingContext targeting,
+    ResolvedEndpoint endpoint,
+    String prompt,
+    String cacheKey
+  ) {
+    recordEndpointMetrics(ctx, endpoint);
+    return callLlm(endpoint, prompt, targeting.inputForLlm())
+      .defaultIfEmpty("")
+      .toMaybe()
+      .onErrorResumeNext(e ->
+        Maybe.fromAction(() ->
+          handleUntransformable(ctx, llmFailureMessage(e))
+        )
+      )
+      .map(transformedBody -> {
+        Buffer result = applyLlmOutput(
           ctx,
-          "LLM response exceeds configured maxLlmResponseBodySize."
+          originalBody,
+          targeting,
+          transformedBody
         );
-        return originalBody;
-      }
+        // Only output that was applied is worth replaying on a cache hit.
+        if (cacheKey != null && result != originalBody) {
+          resultCache.put(cacheKey, transformedBody);
+        }
+        return result;
+      })
+      .defaultIfEmpty(originalBody);
+  }
 
-      String finalBody;
-      try {
-        finalBody = targeting.targetingEnabled()
-          ? applyTargeting(targeting, transformedBody)
-          : transformedBody;
-      } catch (TransformationFailureException e) {
-        handleUntransformable(ctx, e.getMessage());
-        return originalBody;
-      }
+  private Maybe<String> callLlm(
+    ResolvedEndpoint endpoint,
+    String prompt,
+    String input
+  ) {
+    if (configuration.isStreamLlmResponse()) {
+      return llmClient.transformStreaming(
+        endpoint,
+        prompt,
+        input,
+        configuration.getLlmTimeoutMs(),
+        configuration.isUseOpenAiJsonResponseFormat(),
+        configuration.getMaxLlmResponseBodySize()
+      );
+    }
+    if (batcher != null) {
+      return batcher.transform(
+        endpoint,
+        prompt,
+        input,
+        configuration.getLlmTimeoutMs(),
+        configuration.isUseOpenAiJsonResponseFormat()
+      );
+    }
+    if (configuration.isUseOpenAiJsonResponseFormat()) {
+      return llmClient.transform(
+        endpoint,
+        prompt,
+        input,
+        configuration.getLlmTimeoutMs(),
+        true
+      );
+    }
+    return llmClient.transform(
+      endpoint,
+      prompt,
+      input,
+      configuration.getLlmTimeoutMs()
+    );
+  }
+
+  private static String llmFailureMessage(Throwable throwable) {
+    if (throwable instanceof LlmResponseTooLargeException) {
+      return LLM_RESPONSE_TOO_LARGE;
+    }
+    if (throwable instanceof TransformationFailureException) {
+      return throwable.getMessage();
+    }
+    return (
+      "LLM call failed: " +
+      (throwable.getMessage() == null
+          ? throwable.getClass().getSimpleName()
+          : throwable.getMessage())
+    );
+  }
 
-      Buffer transformedBuffer = Buffer.buffer(finalBody);
-      ctx.request().contentLength(transformedBuffer.length());
+  /**
+   * Transforms every element matched by a wildcard target with its own LLM
+   * call. At most maxConcurrency calls run at once, results are reassembled
+   * in document order, and the whole fan-out shares one deadline. errorMode
+   * applies per element: in FAIL_OPEN a failed element keeps its value.
+   */
+  private Single<Buffer> transformFanOut(
+    HttpPlainExecutionContext ctx,
+    Buffer originalBody,
+    TargetingContext targeting,
+    ResolvedEndpoint endpoint,
+    String prompt
+  ) {
+    AiRequestTransformerPolicyConfiguration.FanOut fanOut =
+      configuration.getFanOut();
+    long deadlineMs = fanOut.getDeadlineMs() > 0
+      ? fanOut.getDeadlineMs()
+      : configuration.getLlmTimeoutMs();
+    List<JsonNode> elements = targeting.targets().get(0).values();
+    recordEndpointMetrics(ctx, endpoint);
 
-      transformed = true;
-      return transformedBuffer;
-    } finally {
-      recordMetrics(ctx, startedAt, transformed);
+    return Flowable.range(0, elements.size())
+      .concatMapEager(
+        index ->
+          transformElement(
+            ctx,
+            endpoint,
+            prompt,
+            index,
+            elements.get(index)
+          ).toFlowable(),
+        Math.max(fanOut.getMaxConcurrency(), 1),
+        1
+      )
+      .toList()
+      .timeout(Math.max(deadlineMs, 1), TimeUnit.MILLISECONDS)
+      .map(replacements -> {
+        Buffer transformedBuffer = writeReplacements(
+          originalBody,
+          targeting,
+          List.of(replacements)
+        );
+        ctx.request().contentLength(transformedBuffer.length());
+        return transformedBuffer;
+      })
+      .onErrorResumeNext(e -> {
+        if (e instanceof TimeoutException) {
+          return Single.fromCallable(() -> {
+            handleUntransformable(ctx, "LLM fan-out exceeded its deadline.");
+            return originalBody;
+          });
+        }
+        if (e instanceof TransformationFailureException) {
+          return Single.fromCallable(() -> {
+            handleUntransformable(ctx, e.getMessage());
+            return originalBody;
+          });
+        }
+        return Single.error(e);
+      });
+  }
+
+  private Single<JsonNode> transformElement(
+    HttpPlainExecutionContext ctx,
+    ResolvedEndpoint endpoint,
+    String prompt,
+    int index,
+    JsonNode element
+  ) {
+    return callLlm(endpoint, prompt, llmText(element))
+      .defaultIfEmpty("")
+      .map(this::parseElementOutput)
+      .onErrorResumeNext(e ->
+        Single.fromCallable(() -> {
+          handleUntransformable(
+            ctx,
+            "Element " + index + ": " + llmFailureMessage(e)
+          );
+          return element;
+        })
+      );
+  }
+
+  private JsonNode parseElementOutput(String output) {
+    if (output.isBlank()) {
+      throw new TransformationFailureException(
+        "LLM returned an empty transformation."
+      );
+    }
+    int maxLlmResponseBodySize = configuration.getMaxLlmResponseBodySize();
+    if (
+      maxLlmResponseBodySize > 0 &&
+      output.getBytes(StandardCharsets.UTF_8).length > maxLlmResponseBodySize
+    ) {
+      throw new TransformationFailureException(LLM_RESPONSE_TOO_LARGE);
+    }
+    try {
+      return OBJECT_MAPPER.readTree(output);
+    } catch (Exception e) {
+      throw new TransformationFailureException(
+        "LLM output is not valid JSON for targeted transformation."
+      );
+    }
+  }
+
+  private Buffer applyLlmOutput(
+    HttpPlainExecutionContext ctx,
+    Buffer originalBody,
+    TargetingContext targeting,
+    String transformedBody
+  ) throws Exception {
+    if (transformedBody.isBlank()) {
+      handleUntransformable(ctx, "LLM returned an empty transformation.");
+      return originalBody;
+    }
+
+    byte[] transformedBytes = transformedBody.getBytes(StandardCharsets.UTF_8);
+    int maxLlmResponseBodySize = configuration.getMaxLlmResponseBodySize();
+    if (
+      maxLlmResponseBodySize > 0 &&
+      transformedBytes.length > maxLlmResponseBodySize
+    ) {
+      handleUntransformable(ctx, LLM_RESPONSE_TOO_LARGE);
+      return originalBody;
+    }
+
+    Buffer transformedBuffer;
+    try {
+      transformedBuffer = targeting.targetingEnabled()
+        ? applyTargeting(originalBody, targeting, transformedBody)
+        : Buffer.buffer(transformedBytes);
+    } catch (TransformationFailureException e) {
+      handleUntransformable(ctx, e.getMessage());
+      return originalBody;
     }
+
+    ctx.request().contentLength(transformedBuffer.length());
+    return transformedBuffer;
   }
 
   private TargetingContext resolveTargeting(
     HttpPlainExecutionContext ctx,
-    String originalPayload
+    Buffer originalBody
   ) {
-    String targetPath = sanitizeTargetPath(configuration.getTargetPath());
-    TargetMode targetMode = resolveTargetMode();
-    boolean targetingEnabled = configuration.isJsonTargetingEnabled();
+    if (!configuration.isJsonTargetingEnabled()) {
+      return TargetingContext.noTargeting(originalBody.toString());
+    }
 
-    if (!targetingEnabled) {
-      return TargetingContext.noTargeting(originalPayload);
+    if (targetPaths == null) {
+      handleUntransformable(ctx, targetPathError);
+      return TargetingContext.skip();
     }
 
-    JsonNode root;
+    TargetMode targetMode = resolveTargetMode();
+    boolean splice =
+      configuration.isStreamingTargeting() &&
+      targetMode == TargetMode.REPLACE_TARGET &&
+      !targetPaths.get(0).isRoot();
+
+    JsonNode root = null;
+    List<SelectedTarget> selected = new ArrayList<>(targetPaths.size());
     try {
-      root = OBJECT_MAPPER.readTree(originalPayload);
+      if (splice) {
+        // Only the targets are materialized; the output is spliced later.
+        for (TargetPath path : targetPaths) {
+          List<TargetPath.Match> located = path.locate(
+            OBJECT_MAPPER.createParser(bodyStream(originalBody))
+          );
+          if (path.isDefinite() && located.size() > 1) {
+            // Duplicate keys: keep the last one, as the tree mode does.
+            located = List.of(located.get(located.size() - 1));
+          }
+          selected.add(
+            new SelectedTarget(
+              path,
+              located.stream().map(TargetPath.Match::value).toList(),
+              located
+            )
+          );
+        }
+      } else {
+        root = readJson(originalBody);
+        for (TargetPath path : targetPaths) {
+          selected.add(new SelectedTarget(path, path.select(root), null));
+        }
+      }
     } catch (Exception e) {
       handleUntransformable(
         ctx,
@@ -234,33 +685,65 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
       return TargetingContext.skip();
     }
 
-    List<String> segments;
-    try {
-      segments = parsePath(targetPath);
-    } catch (TransformationFailureException e) {
-      handleUntransformable(ctx, e.getMessage());
+    List<SelectedTarget> found = selected
+      .stream()
+      .filter(target -> !target.values().isEmpty())
+      .toList();
+    if (found.size() < selected.size() && configuration.isTargetRequired()) {
+      TargetPath missing = selected
+        .stream()
+        .filter(target -> target.values().isEmpty())
+        .findFirst()
+        .orElseThrow()
+        .path();
+      handleUntransformable(
+        ctx,
+        "Target path '" + missing + "' was not found in JSON payload."
+      );
       return TargetingContext.skip();
     }
-
-    JsonNode selected = selectNode(root, segments);
-
-    if (selected == null) {
-      if (configuration.isTargetRequired()) {
-        handleUntransformable(
-          ctx,
-          "Target path '" + targetPath + "' was not found in JSON payload."
-        );
-      }
+    if (found.isEmpty()) {
       return TargetingContext.skip();
     }
 
-    String llmInput = selected.isTextual()
-      ? selected.asText()
-      : selected.toString();
-    return TargetingContext.targeting(root, segments, targetMode, llmInput);
+    String llmInput;
+    if (targetPaths.size() == 1) {
+      llmInput = found.get(0).path().isDefinite()
+        ? llmText(found.get(0).values().get(0))
+        : llmValue(found.get(0)).toString();
+    } else {
+      // Several targets travel as one object keyed by their path.
+      ObjectNode fields = OBJECT_MAPPER.createObjectNode();
+      found.forEach(target ->
+        fields.set(target.path().expression(), llmValue(target))
+      );
+      llmInput = fields.toString();
+    }
+    return TargetingContext.targeting(
+      root,
+      targetMode,
+      llmInput,
+      originalBody.length(),
+      found,
+      targetPaths.size() > 1
+    );
+  }
+
+  private static String llmText(JsonNode value) {
+    return value.isTextual() ? value.asText() : value.toString();
+  }
+
+  /**
+   * Wildcard targets are sent, and expected back, as one JSON array.
+   */
+  private static JsonNode llmValue(SelectedTarget target) {
+    return target.path().isDefinite()
+      ? target.values().get(0)
+      : OBJECT_MAPPER.createArrayNode().addAll(target.values());
   }
 
-  private String applyTargeting(
+  private Buffer applyTargeting(
+    Buffer originalBody,
     TargetingContext targeting,
     String transformedBody
   ) throws Exception {
@@ -279,86 +762,146 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
           "MERGE_OBJECT_AT_ROOT requires both original root and LLM output to be JSON objects."
         );
       }
-      ObjectNode merged = ((ObjectNode) targeting.rootNode()).deepCopy();
+      // The root is this request's own parse result: mutate it in place.
+      ObjectNode merged = (ObjectNode) targeting.rootNode();
       merged.setAll((ObjectNode) transformedNode);
-      return OBJECT_MAPPER.writeValueAsString(merged);
+      return writeJson(merged, targeting.sizeHint());
     }
 
-    if (targeting.pathSegments().isEmpty()) {
-      return OBJECT_MAPPER.writeValueAsString(transformedNode);
+    List<SelectedTarget> targets = targeting.targets();
+    if (targets.get(0).path().isRoot()) {
+      return writeJson(transformedNode, targeting.sizeHint());
+    }
+    if (targeting.multiField() && !transformedNode.isObject()) {
+      throw new TransformationFailureException(
+        "LLM output must be a JSON object keyed by target path."
+      );
     }
 
-    JsonNode replaced = replaceAtPath(
-      targeting.rootNode(),
-      targeting.pathSegments(),
-      transformedNode
-    );
-    return OBJECT_MAPPER.writeValueAsString(replaced);
+    List<List<JsonNode>> replacements = new ArrayList<>(targets.size());
+    for (SelectedTarget target : targets) {
+      JsonNode value = targeting.multiField()
+        ? transformedNode.get(target.path().expression())
+        : transformedNode;
+      if (value == null) {
+        throw new TransformationFailureException(
+          "LLM output is missing target path '" + target.path() + "'."
+        );
+      }
+      replacements.add(replacementsFor(target, value));
+    }
+
+    return writeReplacements(originalBody, targeting, replacements);
   }
 
-  private JsonNode replaceAtPath(
-    JsonNode root,
-    List<String> segments,
-    JsonNode replacement
-  ) {
-    JsonNode copy = root.deepCopy();
-    JsonNode cursor = copy;
-    for (int i = 0; i < segments.size() - 1; i++) {
-      cursor = cursor.get(segments.get(i));
-      if (cursor == null || !cursor.isObject()) {
+  private Buffer writeReplacements(
+    Buffer originalBody,
+    TargetingContext targeting,
+    List<List<JsonNode>> replacements
+  ) throws IOException {
+    List<SelectedTarget> targets = targeting.targets();
+    if (targets.get(0).located() != null) {
+      try {
+        return splice(originalBody, targets, replacements);
+      } catch (TransformationFailureException e) {
+        throw e;
+      } catch (RuntimeException e) {
         throw new TransformationFailureException(
-          "Target path points to an invalid parent node."
+          "LLM output could not be spliced into the JSON payload."
         );
       }
     }
 
-    if (!cursor.isObject()) {
+    try {
+      for (int i = 0; i < targets.size(); i++) {
+        targets
+          .get(i)
+          .path()
+          .replace(targeting.rootNode(), replacements.get(i));
+      }
+    } catch (IllegalArgumentException e) {
+      // An earlier replacement changed what a later path selects.
       throw new TransformationFailureException(
-        "Target path points to a non-object parent node."
+        "Target paths must not select overlapping values."
       );
     }
-
-    ((ObjectNode) cursor).set(segments.get(segments.size() - 1), replacement);
-    return copy;
-  }
-
-  private JsonNode selectNode(JsonNode root, List<String> segments) {
-    JsonNode cursor = root;
-    for (String segment : segments) {
-      if (cursor == null || !cursor.isObject()) {
-        return null;
-      }
-      cursor = cursor.get(segment);
-    }
-    return cursor;
+    return writeJson(targeting.rootNode(), targeting.sizeHint());
   }
 
-  private List<String> parsePath(String targetPath) {
-    if ("$".equals(targetPath)) {
-      return List.of();
+  private static List<JsonNode> replacementsFor(
+    SelectedTarget target,
+    JsonNode value
+  ) {
+    if (target.path().isDefinite()) {
+      return List.of(value);
     }
-
-    if (!targetPath.startsWith("$.")) {
+    if (!value.isArray() || value.size() != target.values().size()) {
       throw new TransformationFailureException(
-        "Unsupported target path format. Expected '$' or '$.field[.subField]'."
+        "LLM output must be a JSON array with one element per target match."
       );
     }
 
-    String withoutPrefix = targetPath.substring(2);
-    if (withoutPrefix.isBlank()) {
-      throw new TransformationFailureException("Target path cannot be empty.");
+    List<JsonNode> elements = new ArrayList<>(value.size());
+    value.forEach(elements::add);
+    return elements;
+  }
+
+  /**
+   * Copies the untouched byte ranges of the original body and writes each
+   * replacement in place of the corresponding located target.
+   */
+  private Buffer splice(
+    Buffer originalBody,
+    List<SelectedTarget> targets,
+    List<List<JsonNode>> replacements
+  ) throws IOException {
+    List<Splice> splices = new ArrayList<>();
+    for (int i = 0; i < targets.size(); i++) {
+      List<TargetPath.Match> located = targets.get(i).located();
+      for (int j = 0; j < located.size(); j++) {
+        TargetPath.Match match = located.get(j);
+        splices.add(
+          new Splice(match.start(), match.end(), replacements.get(i).get(j))
+        );
+      }
     }
-    if (withoutPrefix.contains("[") || withoutPrefix.contains("]")) {
-      throw new TransformationFailureException(
-        "Array targeting is not supported in this version."
-      );
+    splices.sort(Comparator.comparingLong(Splice::start));
+
+    ByteBuf source = originalBody.getNativeBuffer();
+    int base = source.readerIndex();
+    ByteBuf out = Unpooled.buffer(originalBody.length());
+    int cursor = 0;
+    for (Splice splice : splices) {
+      if (splice.start() < cursor) {
+        throw new TransformationFailureException(
+          "Target paths must not select overlapping values."
+        );
+      }
+      out.writeBytes(source, base + cursor, (int) splice.start() - cursor);
+      out.writeBytes(OBJECT_MAPPER.writeValueAsBytes(splice.replacement()));
+      cursor = (int) splice.end();
     }
+    out.writeBytes(source, base + cursor, originalBody.length() - cursor);
+    return Buffer.buffer(out);
+  }
 
-    return List.of(withoutPrefix.split("\\."));
+  private static JsonNode readJson(Buffer buffer) throws IOException {
+    return OBJECT_MAPPER.readTree(bodyStream(buffer));
   }
 
-  private String sanitizeTargetPath(String targetPath) {
-    return targetPath == null || targetPath.isBlank() ? "$" : targetPath.trim();
+  private static InputStream bodyStream(Buffer buffer) {
+    // Read straight from the native buffer; a duplicate leaves its reader
+    // index untouched.
+    return new ByteBufInputStream(buffer.getNativeBuffer().duplicate());
+  }
+
+  private static Buffer writeJson(JsonNode node, int sizeHint)
+    throws IOException {
+    ByteBuf out = Unpooled.buffer(Math.max(sizeHint, 256));
+    try (OutputStream stream = new ByteBufOutputStream(out)) {
+      OBJECT_MAPPER.writeValue(stream, node);
+    }
+    return Buffer.buffer(out);
   }
 
   private TargetMode resolveTargetMode() {
@@ -381,30 +924,190 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
     ctx.metrics().putAdditionalMetric(METRIC_TRANSFORM_TIME_MS, elapsedMs);
   }
 
-  private String renderTemplate(
+  private void recordCacheMetrics(HttpPlainExecutionContext ctx, boolean hit) {
+    ctx.metrics().putAdditionalMetric(METRIC_CACHE_HIT_COUNT, hit ? 1L : 0L);
+    ctx.metrics().putAdditionalMetric(METRIC_CACHE_MISS_COUNT, hit ? 0L : 1L);
+  }
+
+  private void recordEndpointMetrics(
     HttpPlainExecutionContext ctx,
-    String rawTemplate
+    ResolvedEndpoint endpoint
   ) {
-    if (rawTemplate == null || !hasTemplateMarker(rawTemplate)) {
-      return rawTemplate;
+    EndpointCircuitBreaker breaker = llmClient.circuitBreaker(endpoint);
+    if (breaker != null) {
+      ctx
+        .metrics()
+        .putAdditionalKeywordMetric(
+          METRIC_CIRCUIT_STATE,
+          breaker.state().name()
+        );
     }
 
-    TemplateEngine templateEngine = ctx.getTemplateEngine();
-    if (templateEngine == null) {
-      throw new IllegalStateException("Template engine is not available.");
+    ConcurrencyLimiter limiter = llmClient.concurrencyLimiter(endpoint);
+    if (limiter != null) {
+      ctx
+        .metrics()
+        .putAdditionalMetric(METRIC_CONCURRENCY_LIMIT, limiter.currentLimit());
+      ctx.metrics().putAdditionalMetric(METRIC_IN_FLIGHT, limiter.inFlight());
+      ctx
+        .metrics()
+        .putAdditionalMetric(METRIC_QUEUE_DEPTH, limiter.queueDepth());
     }
 
-    return templateEngine.convert(rawTemplate);
+    TokenBudget budget = llmClient.tokenBudget(endpoint);
+    if (budget != null) {
+      ctx
+        .metrics()
+        .putAdditionalMetric(METRIC_TOKENS_AVAILABLE, budget.available());
+    }
   }
 
-  private boolean hasTemplateMarker(String value) {
-    return (
-      value != null &&
-      (value.contains(TEMPLATE_MARKER_OPEN) ||
-        value.contains(TEMPLATE_MARKER_OPEN_ALT))
+  private static TransformationResultCache createResultCache(
+    AiRequestTransformerPolicyConfiguration.ResultCache settings
+  ) {
+    if (settings == null || !settings.isEnabled()) {
+      return null;
+    }
+    return new TransformationResultCache(
+      settings.getMaxEntries(),
+      settings.getMaxSizeBytes(),
+      settings.getTtlMs()
+    );
+  }
+
+  private static TransformationBatcher createBatcher(
+    TransformerLlmClient llmClient,
+    AiRequestTransformerPolicyConfiguration.Batching settings
+  ) {
+    if (settings == null || !settings.isEnabled()) {
+      return null;
+    }
+    return new TransformationBatcher(
+      llmClient,
+      settings.getMaxBatchSize(),
+      settings.getWindowMs()
     );
   }
 
+  private static void configureHedging(
+    TransformerLlmClient llmClient,
+    AiRequestTransformerPolicyConfiguration configuration
+  ) {
+    AiRequestTransformerPolicyConfiguration.Hedging settings =
+      configuration.getHedging();
+    if (llmClient == null || settings == null || !settings.isEnabled()) {
+      return;
+    }
+    llmClient.setHedger(
+      new RequestHedger(
+        settings.getDelayMs(),
+        settings.getPercentile(),
+        settings.getMaxHedgeRatio()
+      )
+    );
+    // Backups go to another endpoint of the llm-proxy group when it has one.
+    llmClient.setBackupSelector(primary ->
+      primary.pool() == null
+        ? null
+        : primary.pool().selectOther(primary, configuration.getLoadBalancing())
+    );
+  }
+
+  private static void configureCircuitBreaker(
+    TransformerLlmClient llmClient,
+    AiRequestTransformerPolicyConfiguration.CircuitBreaker settings
+  ) {
+    if (llmClient == null || settings == null || !settings.isEnabled()) {
+      return;
+    }
+    llmClient.setCircuitBreakers(endpoint ->
+      new EndpointCircuitBreaker(
+        endpoint.target(),
+        settings.getFailureRateThreshold(),
+        settings.getSlowCallRateThreshold(),
+        settings.getSlowCallDurationMs(),
+        settings.getMinimumCalls(),
+        settings.getSlidingWindowSize(),
+        settings.getOpenStateMs(),
+        settings.getHalfOpenCalls()
+      )
+    );
+  }
+
+  private static void configureConcurrencyLimit(
+    TransformerLlmClient llmClient,
+    AiRequestTransformerPolicyConfiguration.ConcurrencyLimit settings
+  ) {
+    if (llmClient == null || settings == null || !settings.isEnabled()) {
+      return;
+    }
+    llmClient.setConcurrencyLimiters(endpoint ->
+      ConcurrencyLimiter.shared(
+        endpoint.target(),
+        settings.getInitialLimit(),
+        settings.getMinLimit(),
+        settings.getMaxLimit(),
+        settings.getMaxQueueSize(),
+        settings.getLatencyTolerance()
+      )
+    );
+  }
+
+  private static void configureTokenBudget(
+    TransformerLlmClient llmClient,
+    AiRequestTransformerPolicyConfiguration.TokenBudget settings
+  ) {
+    if (llmClient == null || settings == null || !settings.isEnabled()) {
+      return;
+    }
+    llmClient.setTokenBudgets(endpoint ->
+      TokenBudget.shared(
+        endpoint.target(),
+        endpoint.model(),
+        settings.getTokensPerMinute(),
+        settings.getCharsPerToken()
+      )
+    );
+  }
+
+  private static void configureRetry(
+    TransformerLlmClient llmClient,
+    AiRequestTransformerPolicyConfiguration.Retry settings
+  ) {
+    if (llmClient == null || settings == null || !settings.isEnabled()) {
+      return;
+    }
+    llmClient.setRetryPolicies(endpoint ->
+      new RetryPolicy(
+        settings.getMaxAttempts(),
+        settings.getInitialBackoffMs(),
+        settings.getMaxBackoffMs(),
+        settings.getMaxRetryRatio()
+      )
+    );
+  }
+
+  private static String llmSourceKey(
+    AiRequestTransformerPolicyConfiguration configuration
+  ) {
+    AiRequestTransformerPolicyConfiguration.Llm llm = configuration.getLlm();
+    return String.join(
+      "|",
+      String.valueOf(configuration.getLlmSourceMode()),
+      String.valueOf(configuration.getLlmProxyApiId()),
+      String.valueOf(configuration.getLlmModel()),
+      llm == null ? "" : String.valueOf(llm.getEndpoint()),
+      llm == null ? "" : String.valueOf(llm.getModel())
+    );
+  }
+
+  private String renderPrompt(HttpPlainExecutionContext ctx) {
+    if (promptTemplate.isStatic()) {
+      return promptTemplate.template();
+    }
+    return promptTemplate.render(ctx.getTemplateEngine());
+  }
+
   private void handleUntransformable(
     HttpPlainExecutionContext ctx,
     String message
@@ -428,51 +1131,73 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
 
   private record TargetingContext(
     JsonNode rootNode,
-    List<String> pathSegments,
     TargetMode targetMode,
     String inputForLlm,
     boolean targetingEnabled,
-    boolean skipTransformation
+    boolean skipTransformation,
+    int sizeHint,
+    List<SelectedTarget> targets,
+    boolean multiField
   ) {
     static TargetingContext noTargeting(String originalPayload) {
       return new TargetingContext(
         null,
-        List.of(),
         TargetMode.REPLACE_TARGET,
         originalPayload,
         false,
+        false,
+        0,
+        List.of(),
         false
       );
     }
 
     static TargetingContext targeting(
       JsonNode rootNode,
-      List<String> pathSegments,
       TargetMode targetMode,
-      String inputForLlm
+      String inputForLlm,
+      int sizeHint,
+      List<SelectedTarget> targets,
+      boolean multiField
     ) {
       return new TargetingContext(
         rootNode,
-        pathSegments,
         targetMode,
         inputForLlm,
         true,
-        false
+        false,
+        sizeHint,
+        targets,
+        multiField
       );
     }
 
     static TargetingContext skip() {
       return new TargetingContext(
         null,
-        List.of(),
         TargetMode.REPLACE_TARGET,
         null,
         false,
-        true
+        true,
+        0,
+        List.of(),
+        false
       );
     }
   }
 
+  /**
+   * Values selected by one target path; located is only set when the values
+   * were found by streaming and will be spliced into the original bytes.
+   */
+  private record SelectedTarget(
+    TargetPath path,
+    List<JsonNode> values,
+    List<TargetPath.Match> located
+  ) {}
+
+  private record Splice(long start, long end, JsonNode replacement) {}
+
   private static final class TransformationFailureException
     extends RuntimeException {
 
@@ -480,4 +1205,46 @@ public class AiRequestTransformerPolicy implements HttpPolicy {
       super(message);
     }
   }
+
+  private static final class BodyAggregator {
+
+    private final long maxSize;
+    private final List<Buffer> chunks = new ArrayList<>();
+    private long size;
+    private boolean overflowed;
+
+    private BodyAggregator(long maxSize) {
+      this.maxSize = maxSize <= 0 ? Long.MAX_VALUE : maxSize;
+    }
+
+    /**
+     * Holds the chunk and returns false once the body crossed the limit.
+     */
+    boolean add(Buffer chunk) {
+      chunks.add(chunk);
+      size += chunk.length();
+      overflowed = size > maxSize;
+      return !overflowed;
+    }
+
+    boolean overflowed() {
+      return overflowed;
+    }
+
+    List<Buffer> release() {
+      List<Buffer> released = new ArrayList<>(chunks);
+      chunks.clear();
+      return released;
+    }
+
+    Buffer aggregate() {
+      if (chunks.size() == 1) {
+        return chunks.get(0);
+      }
+
+      Buffer body = Buffer.buffer((int) size);
+      chunks.forEach(body::appendBuffer);
+      return body;
+    }
+  }
 }
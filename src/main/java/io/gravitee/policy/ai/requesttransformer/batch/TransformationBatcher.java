@@ -0,0 +1,279 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.gravitee.policy.ai.requesttransformer.llm.ResolvedEndpoint;
+import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeEmitter;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups concurrent transformations that share an endpoint and a prompt into
+ * one chat completion.
+ *
+ * Items are collected for up to a time window or until the batch is full, then
+ * sent as a JSON object keyed by item index together with instructions to
+ * transform every value independently. The answer is split back by key. An
+ * item whose answer is missing or malformed falls back to its own LLM call,
+ * while a failed batch call fails every item of the batch. Every item keeps
+ * the deadline it was enqueued with: the batch call and any fallback only
+ * get the time left, and an item out of time fails with a timeout.
+ */
+public class TransformationBatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    TransformationBatcher.class
+  );
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  static final String BATCH_INSTRUCTIONS =
+    "You receive a JSON object whose values are independent inputs. Apply the instructions below to each value separately and answer only with a JSON object that has exactly the same keys, each mapped to the transformed value as a string.\n\nInstructions:\n";
+
+  private final TransformerLlmClient llmClient;
+  private final int maxBatchSize;
+  private final long windowMs;
+  private final Scheduler scheduler;
+
+  private final ConcurrentMap<BatchKey, Batch> openBatches =
+    new ConcurrentHashMap<>();
+
+  public TransformationBatcher(
+    TransformerLlmClient llmClient,
+    int maxBatchSize,
+    long windowMs
+  ) {
+    this(llmClient, maxBatchSize, windowMs, Schedulers.computation());
+  }
+
+  TransformationBatcher(
+    TransformerLlmClient llmClient,
+    int maxBatchSize,
+    long windowMs,
+    Scheduler scheduler
+  ) {
+    this.llmClient = llmClient;
+    this.maxBatchSize = Math.max(maxBatchSize, 1);
+    this.windowMs = Math.max(windowMs, 1);
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Same contract as {@link TransformerLlmClient#transform}: completes empty
+   * when the LLM returns no content for this item. A waiter that goes away
+   * before its batch is sent is simply left out of it.
+   */
+  public Maybe<String> transform(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    String userContent,
+    int timeoutMs,
+    boolean useOpenAiJsonResponseFormat
+  ) {
+    BatchKey key = new BatchKey(
+      endpoint,
+      systemPrompt,
+      timeoutMs,
+      useOpenAiJsonResponseFormat
+    );
+    return Maybe.create(emitter -> {
+      long deadlineMs = timeoutMs > 0
+        ? scheduler.now(TimeUnit.MILLISECONDS) + timeoutMs
+        : Long.MAX_VALUE;
+      enqueue(key, new Item(userContent, emitter, deadlineMs));
+    });
+  }
+
+  private void enqueue(BatchKey key, Item item) {
+    Batch[] full = new Batch[1];
+    openBatches.compute(key, (k, batch) -> {
+      if (batch == null) {
+        Batch created = new Batch();
+        created.timer = scheduler.scheduleDirect(
+          () -> {
+            if (openBatches.remove(k, created)) {
+              dispatch(k, created.items);
+            }
+          },
+          windowMs,
+          TimeUnit.MILLISECONDS
+        );
+        batch = created;
+      }
+      batch.items.add(item);
+      if (batch.items.size() >= maxBatchSize) {
+        full[0] = batch;
+        return null;
+      }
+      return batch;
+    });
+
+    if (full[0] != null) {
+      full[0].timer.dispose();
+      dispatch(key, full[0].items);
+    }
+  }
+
+  private void dispatch(BatchKey key, List<Item> batch) {
+    List<Item> items = batch
+      .stream()
+      .filter(item -> !item.emitter().isDisposed() && !expired(key, item))
+      .toList();
+    if (items.isEmpty()) {
+      return;
+    }
+    if (items.size() == 1) {
+      sendIndividually(key, items.get(0));
+      return;
+    }
+
+    ObjectNode input = OBJECT_MAPPER.createObjectNode();
+    for (int i = 0; i < items.size(); i++) {
+      input.put(Integer.toString(i), items.get(i).userContent());
+    }
+
+    // The batch call is not cancelled by individual waiters: it serves all,
+    // so it must end before the earliest of their deadlines.
+    int timeoutMs = items
+      .stream()
+      .mapToInt(item -> remainingMs(key, item))
+      .min()
+      .orElse(key.timeoutMs());
+    llmClient
+      .transform(
+        key.endpoint(),
+        BATCH_INSTRUCTIONS + key.systemPrompt(),
+        input.toString(),
+        timeoutMs,
+        true
+      )
+      .subscribe(
+        content -> demultiplex(key, items, content),
+        throwable ->
+          items.forEach(item -> item.emitter().tryOnError(throwable)),
+        () -> items.forEach(item -> sendIndividually(key, item))
+      );
+  }
+
+  private void demultiplex(BatchKey key, List<Item> items, String content) {
+    JsonNode answer;
+    try {
+      answer = OBJECT_MAPPER.readTree(content);
+    } catch (Exception e) {
+      answer = null;
+    }
+    if (answer == null || !answer.isObject()) {
+      LOGGER.debug("Batched LLM answer is not a JSON object, retrying items.");
+      answer = OBJECT_MAPPER.createObjectNode();
+    }
+
+    for (int i = 0; i < items.size(); i++) {
+      Item item = items.get(i);
+      String output = itemOutput(answer.get(Integer.toString(i)));
+      if (output == null) {
+        sendIndividually(key, item);
+      } else {
+        item.emitter().onSuccess(output);
+      }
+    }
+  }
+
+  private static String itemOutput(JsonNode value) {
+    if (value == null || value.isNull() || value.isMissingNode()) {
+      return null;
+    }
+    String output = value.isTextual() ? value.asText() : value.toString();
+    return output.isBlank() ? null : output;
+  }
+
+  private void sendIndividually(BatchKey key, Item item) {
+    if (item.emitter().isDisposed() || expired(key, item)) {
+      return;
+    }
+    MaybeEmitter<String> emitter = item.emitter();
+    Disposable call = llmClient
+      .transform(
+        key.endpoint(),
+        key.systemPrompt(),
+        item.userContent(),
+        remainingMs(key, item),
+        key.useOpenAiJsonResponseFormat()
+      )
+      .subscribe(emitter::onSuccess, emitter::tryOnError, emitter::onComplete);
+    emitter.setDisposable(call);
+  }
+
+  /**
+   * Fails the item with a timeout when its deadline has passed.
+   */
+  private boolean expired(BatchKey key, Item item) {
+    if (key.timeoutMs() <= 0 || remainingMs(key, item) > 0) {
+      return false;
+    }
+    item
+      .emitter()
+      .tryOnError(
+        new TimeoutException("LLM call deadline expired while batched")
+      );
+    return true;
+  }
+
+  private int remainingMs(BatchKey key, Item item) {
+    if (key.timeoutMs() <= 0) {
+      return key.timeoutMs();
+    }
+    return (int) Math.max(
+      item.deadlineMs() - scheduler.now(TimeUnit.MILLISECONDS),
+      0
+    );
+  }
+
+  int openBatchCount() {
+    return openBatches.size();
+  }
+
+  private record BatchKey(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    int timeoutMs,
+    boolean useOpenAiJsonResponseFormat
+  ) {}
+
+  private record Item(
+    String userContent,
+    MaybeEmitter<String> emitter,
+    long deadlineMs
+  ) {}
+
+  private static final class Batch {
+
+    private final List<Item> items = new ArrayList<>();
+    private Disposable timer;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded LRU cache of LLM transformation outputs.
+ *
+ * Entries are keyed by a SHA-256 digest of everything that shapes the LLM
+ * answer, so large inputs are never retained as keys. The cache is bounded by
+ * entry count and by the UTF-8 size of cached outputs, and entries expire
+ * after a fixed time-to-live.
+ */
+public class TransformationResultCache {
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long ttlNanos;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(
+    16,
+    0.75f,
+    true
+  );
+  private long totalBytes;
+
+  public TransformationResultCache(int maxEntries, long maxBytes, long ttlMs) {
+    this.maxEntries = Math.max(maxEntries, 1);
+    this.maxBytes = maxBytes <= 0 ? Long.MAX_VALUE : maxBytes;
+    this.ttlNanos = ttlMs <= 0
+      ? Long.MAX_VALUE
+      : TimeUnit.MILLISECONDS.toNanos(ttlMs);
+  }
+
+  public static String key(String... parts) {
+    MessageDigest digest = sha256();
+    for (String part : parts) {
+      if (part == null) {
+        digest.update((byte) 0);
+        continue;
+      }
+
+      byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+      digest.update((byte) 1);
+      // Length prefix keeps ("ab", "c") and ("a", "bc") apart.
+      digest.update(
+        new byte[] {
+          (byte) (bytes.length >>> 24),
+          (byte) (bytes.length >>> 16),
+          (byte) (bytes.length >>> 8),
+          (byte) bytes.length,
+        }
+      );
+      digest.update(bytes);
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  public synchronized String get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+
+    if (
+      ttlNanos != Long.MAX_VALUE &&
+      System.nanoTime() - entry.expiresAtNanos() >= 0
+    ) {
+      remove(key);
+      return null;
+    }
+    return entry.value();
+  }
+
+  public synchronized void put(String key, String value) {
+    long bytes = value.getBytes(StandardCharsets.UTF_8).length;
+    if (bytes > maxBytes) {
+      return;
+    }
+
+    remove(key);
+    entries.put(key, new Entry(value, bytes, System.nanoTime() + ttlNanos));
+    totalBytes += bytes;
+
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (
+      (entries.size() > maxEntries || totalBytes > maxBytes) && eldest.hasNext()
+    ) {
+      totalBytes -= eldest.next().getValue().bytes();
+      eldest.remove();
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long sizeInBytes() {
+    return totalBytes;
+  }
+
+  private void remove(String key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      totalBytes -= removed.bytes();
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available.", e);
+    }
+  }
+
+  private record Entry(String value, long bytes, long expiresAtNanos) {}
+}
@@ -16,6 +16,8 @@
 package io.gravitee.policy.ai.requesttransformer.configuration;
 
 import io.gravitee.policy.api.PolicyConfiguration;
+import java.util.ArrayList;
+import java.util.List;
 
 public class AiRequestTransformerPolicyConfiguration
   implements PolicyConfiguration {
@@ -23,6 +25,7 @@ public class AiRequestTransformerPolicyConfiguration
   public static final int DEFAULT_MAX_REQUEST_BODY_SIZE = 1024 * 1024;
   public static final int DEFAULT_MAX_LLM_RESPONSE_BODY_SIZE = 1024 * 1024;
   public static final int DEFAULT_LLM_TIMEOUT_MS = 30000;
+  public static final long DEFAULT_ENDPOINT_CACHE_TTL_MS = 60000;
 
   private String prompt;
 
@@ -40,18 +43,44 @@ public class AiRequestTransformerPolicyConfiguration
 
   private int llmTimeoutMs = DEFAULT_LLM_TIMEOUT_MS;
 
+  private long endpointCacheTtlMs = DEFAULT_ENDPOINT_CACHE_TTL_MS;
+
   private ErrorMode errorMode = ErrorMode.FAIL_OPEN;
 
   private boolean jsonTargetingEnabled;
 
   private String targetPath = "$";
 
+  private List<String> targetPaths = new ArrayList<>();
+
   private TargetMode targetMode = TargetMode.REPLACE_TARGET;
 
+  private LoadBalancing loadBalancing = LoadBalancing.WEIGHTED_ROUND_ROBIN;
+
   private boolean targetRequired;
 
+  private boolean streamingTargeting;
+
   private boolean useOpenAiJsonResponseFormat;
 
+  private boolean streamLlmResponse;
+
+  private ResultCache resultCache = new ResultCache();
+
+  private FanOut fanOut = new FanOut();
+
+  private Batching batching = new Batching();
+
+  private Hedging hedging = new Hedging();
+
+  private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+  private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+
+  private TokenBudget tokenBudget = new TokenBudget();
+
+  private Retry retry = new Retry();
+
   public String getPrompt() {
     return prompt;
   }
@@ -116,6 +145,22 @@ public class AiRequestTransformerPolicyConfiguration
     this.llmTimeoutMs = llmTimeoutMs;
   }
 
+  public long getEndpointCacheTtlMs() {
+    return endpointCacheTtlMs;
+  }
+
+  public void setEndpointCacheTtlMs(long endpointCacheTtlMs) {
+    this.endpointCacheTtlMs = endpointCacheTtlMs;
+  }
+
+  public LoadBalancing getLoadBalancing() {
+    return loadBalancing;
+  }
+
+  public void setLoadBalancing(LoadBalancing loadBalancing) {
+    this.loadBalancing = loadBalancing;
+  }
+
   public ErrorMode getErrorMode() {
     return errorMode;
   }
@@ -140,6 +185,14 @@ public class AiRequestTransformerPolicyConfiguration
     this.targetPath = targetPath;
   }
 
+  public List<String> getTargetPaths() {
+    return targetPaths;
+  }
+
+  public void setTargetPaths(List<String> targetPaths) {
+    this.targetPaths = targetPaths;
+  }
+
   public TargetMode getTargetMode() {
     return targetMode;
   }
@@ -156,6 +209,14 @@ public class AiRequestTransformerPolicyConfiguration
     this.targetRequired = targetRequired;
   }
 
+  public boolean isStreamingTargeting() {
+    return streamingTargeting;
+  }
+
+  public void setStreamingTargeting(boolean streamingTargeting) {
+    this.streamingTargeting = streamingTargeting;
+  }
+
   public boolean isUseOpenAiJsonResponseFormat() {
     return useOpenAiJsonResponseFormat;
   }
@@ -166,6 +227,78 @@ public class AiRequestTransformerPolicyConfiguration
     this.useOpenAiJsonResponseFormat = useOpenAiJsonResponseFormat;
   }
 
+  public boolean isStreamLlmResponse() {
+    return streamLlmResponse;
+  }
+
+  public void setStreamLlmResponse(boolean streamLlmResponse) {
+    this.streamLlmResponse = streamLlmResponse;
+  }
+
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
+
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  public FanOut getFanOut() {
+    return fanOut;
+  }
+
+  public void setFanOut(FanOut fanOut) {
+    this.fanOut = fanOut;
+  }
+
+  public Batching getBatching() {
+    return batching;
+  }
+
+  public void setBatching(Batching batching) {
+    this.batching = batching;
+  }
+
+  public Hedging getHedging() {
+    return hedging;
+  }
+
+  public void setHedging(Hedging hedging) {
+    this.hedging = hedging;
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  public ConcurrencyLimit getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  public void setConcurrencyLimit(ConcurrencyLimit concurrencyLimit) {
+    this.concurrencyLimit = concurrencyLimit;
+  }
+
+  public TokenBudget getTokenBudget() {
+    return tokenBudget;
+  }
+
+  public void setTokenBudget(TokenBudget tokenBudget) {
+    this.tokenBudget = tokenBudget;
+  }
+
+  public Retry getRetry() {
+    return retry;
+  }
+
+  public void setRetry(Retry retry) {
+    this.retry = retry;
+  }
+
   public static class Llm {
 
     private String endpoint;
@@ -219,12 +352,65 @@ public class AiRequestTransformerPolicyConfiguration
     }
   }
 
+  public static class ResultCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_MAX_SIZE_BYTES = 10L * 1024 * 1024;
+    public static final long DEFAULT_TTL_MS = 300000;
+
+    private boolean enabled;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+
+    private long ttlMs = DEFAULT_TTL_MS;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+      return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+    }
+
+    public long getMaxSizeBytes() {
+      return maxSizeBytes;
+    }
+
+    public void setMaxSizeBytes(long maxSizeBytes) {
+      this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public long getTtlMs() {
+      return ttlMs;
+    }
+
+    public void setTtlMs(long ttlMs) {
+      this.ttlMs = ttlMs;
+    }
+  }
+
   public enum AuthType {
     NONE,
     BEARER,
     HEADER,
   }
 
+  public enum LoadBalancing {
+    WEIGHTED_ROUND_ROBIN,
+    LEAST_OUTSTANDING,
+    LATENCY_EWMA,
+  }
+
   public enum TargetMode {
     REPLACE_TARGET,
     MERGE_OBJECT_AT_ROOT,
@@ -234,4 +420,375 @@ public class AiRequestTransformerPolicyConfiguration
     LLM_PROXY_API,
     INLINE,
   }
+
+  public static class FanOut {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private boolean enabled;
+
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    private long deadlineMs;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxConcurrency() {
+      return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+      this.maxConcurrency = maxConcurrency;
+    }
+
+    public long getDeadlineMs() {
+      return deadlineMs;
+    }
+
+    public void setDeadlineMs(long deadlineMs) {
+      this.deadlineMs = deadlineMs;
+    }
+  }
+
+  public static class Batching {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 8;
+    public static final long DEFAULT_WINDOW_MS = 5;
+
+    private boolean enabled;
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private long windowMs = DEFAULT_WINDOW_MS;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxBatchSize() {
+      return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getWindowMs() {
+      return windowMs;
+    }
+
+    public void setWindowMs(long windowMs) {
+      this.windowMs = windowMs;
+    }
+  }
+
+  public static class Hedging {
+
+    public static final int DEFAULT_PERCENTILE = 95;
+    public static final double DEFAULT_MAX_HEDGE_RATIO = 0.1;
+
+    private boolean enabled;
+
+    private long delayMs;
+
+    private int percentile = DEFAULT_PERCENTILE;
+
+    private double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getDelayMs() {
+      return delayMs;
+    }
+
+    public void setDelayMs(long delayMs) {
+      this.delayMs = delayMs;
+    }
+
+    public int getPercentile() {
+      return percentile;
+    }
+
+    public void setPercentile(int percentile) {
+      this.percentile = percentile;
+    }
+
+    public double getMaxHedgeRatio() {
+      return maxHedgeRatio;
+    }
+
+    public void setMaxHedgeRatio(double maxHedgeRatio) {
+      this.maxHedgeRatio = maxHedgeRatio;
+    }
+  }
+
+  public static class CircuitBreaker {
+
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+    public static final long DEFAULT_SLOW_CALL_DURATION_MS = 10000;
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final int DEFAULT_SLIDING_WINDOW_SIZE = 20;
+    public static final long DEFAULT_OPEN_STATE_MS = 30000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 1;
+
+    private boolean enabled;
+
+    private int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+    private int slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+    private long slowCallDurationMs = DEFAULT_SLOW_CALL_DURATION_MS;
+
+    private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+
+    private int slidingWindowSize = DEFAULT_SLIDING_WINDOW_SIZE;
+
+    private long openStateMs = DEFAULT_OPEN_STATE_MS;
+
+    private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getFailureRateThreshold() {
+      return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(int failureRateThreshold) {
+      this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public int getSlowCallRateThreshold() {
+      return slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+      this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public long getSlowCallDurationMs() {
+      return slowCallDurationMs;
+    }
+
+    public void setSlowCallDurationMs(long slowCallDurationMs) {
+      this.slowCallDurationMs = slowCallDurationMs;
+    }
+
+    public int getMinimumCalls() {
+      return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+      this.minimumCalls = minimumCalls;
+    }
+
+    public int getSlidingWindowSize() {
+      return slidingWindowSize;
+    }
+
+    public void setSlidingWindowSize(int slidingWindowSize) {
+      this.slidingWindowSize = slidingWindowSize;
+    }
+
+    public long getOpenStateMs() {
+      return openStateMs;
+    }
+
+    public void setOpenStateMs(long openStateMs) {
+      this.openStateMs = openStateMs;
+    }
+
+    public int getHalfOpenCalls() {
+      return halfOpenCalls;
+    }
+
+    public void setHalfOpenCalls(int halfOpenCalls) {
+      this.halfOpenCalls = halfOpenCalls;
+    }
+  }
+
+  public static class ConcurrencyLimit {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 100;
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+    private boolean enabled;
+
+    private int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+    private int minLimit = DEFAULT_MIN_LIMIT;
+
+    private int maxLimit = DEFAULT_MAX_LIMIT;
+
+    private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+
+    private double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+      return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+      this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+      return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+      this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+      return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+      this.maxLimit = maxLimit;
+    }
+
+    public int getMaxQueueSize() {
+      return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+      this.maxQueueSize = maxQueueSize;
+    }
+
+    public double getLatencyTolerance() {
+      return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+      this.latencyTolerance = latencyTolerance;
+    }
+  }
+
+  public static class TokenBudget {
+
+    public static final long DEFAULT_TOKENS_PER_MINUTE = 90000;
+    public static final int DEFAULT_CHARS_PER_TOKEN = 4;
+
+    private boolean enabled;
+
+    private long tokensPerMinute = DEFAULT_TOKENS_PER_MINUTE;
+
+    private int charsPerToken = DEFAULT_CHARS_PER_TOKEN;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getTokensPerMinute() {
+      return tokensPerMinute;
+    }
+
+    public void setTokensPerMinute(long tokensPerMinute) {
+      this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public int getCharsPerToken() {
+      return charsPerToken;
+    }
+
+    public void setCharsPerToken(int charsPerToken) {
+      this.charsPerToken = charsPerToken;
+    }
+  }
+
+  public static class Retry {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 100;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 2000;
+    public static final double DEFAULT_MAX_RETRY_RATIO = 0.2;
+
+    private boolean enabled;
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    private long initialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+
+    private long maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+
+    private double maxRetryRatio = DEFAULT_MAX_RETRY_RATIO;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxAttempts() {
+      return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+      this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoffMs() {
+      return initialBackoffMs;
+    }
+
+    public void setInitialBackoffMs(long initialBackoffMs) {
+      this.initialBackoffMs = initialBackoffMs;
+    }
+
+    public long getMaxBackoffMs() {
+      return maxBackoffMs;
+    }
+
+    public void setMaxBackoffMs(long maxBackoffMs) {
+      this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public double getMaxRetryRatio() {
+      return maxRetryRatio;
+    }
+
+    public void setMaxRetryRatio(double maxRetryRatio) {
+      this.maxRetryRatio = maxRetryRatio;
+    }
+  }
 }
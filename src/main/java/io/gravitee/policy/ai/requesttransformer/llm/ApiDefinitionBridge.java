@@ -0,0 +1,290 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.gravitee.gateway.reactive.api.context.http.HttpPlainExecutionContext;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bridge to gateway-side API definitions that are not on the policy compile
+ * classpath. Classes and accessors are looked up once and invoked through
+ * cached method handles, and only the llm-proxy endpoint groups are copied
+ * out of a definition instead of converting the whole definition to JSON.
+ */
+final class ApiDefinitionBridge {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    ApiDefinitionBridge.class
+  );
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType GETTER_TYPE = MethodType.methodType(
+    Object.class,
+    Object.class
+  );
+
+  static final String API_MANAGER_CLASS =
+    "io.gravitee.gateway.handlers.api.manager.ApiManager";
+  static final List<String> API_CLASS_CANDIDATES = List.of(
+    "io.gravitee.definition.model.v4.Api",
+    "io.gravitee.definition.model.Api"
+  );
+  static final String LLM_PROXY_GROUP_TYPE = "llm-proxy";
+
+  private static final ClassValue<Map<String, Optional<MethodHandle>>> GETTERS =
+    new ClassValue<>() {
+      @Override
+      protected Map<String, Optional<MethodHandle>> computeValue(
+        Class<?> type
+      ) {
+        return new ConcurrentHashMap<>();
+      }
+    };
+
+  private final Class<?> apiManagerClass;
+  private final MethodHandle apiManagerGet;
+  private final List<Class<?>> apiClasses;
+
+  private volatile Object apiManager;
+
+  ApiDefinitionBridge() {
+    this(API_MANAGER_CLASS, API_CLASS_CANDIDATES);
+  }
+
+  ApiDefinitionBridge(String apiManagerClassName, List<String> apiClassNames) {
+    Class<?> managerClass = loadClass(apiManagerClassName);
+    MethodHandle managerGet = null;
+    if (managerClass != null) {
+      try {
+        managerGet = LOOKUP.unreflect(
+          managerClass.getMethod("get", String.class)
+        ).asType(
+          MethodType.methodType(Object.class, Object.class, String.class)
+        );
+      } catch (Exception e) {
+        LOGGER.debug("ApiManager#get(String) is not accessible.", e);
+        managerClass = null;
+      }
+    }
+    this.apiManagerClass = managerClass;
+    this.apiManagerGet = managerGet;
+    this.apiClasses = apiClassNames
+      .stream()
+      .map(ApiDefinitionBridge::loadClass)
+      .filter(Objects::nonNull)
+      .toList();
+  }
+
+  /**
+   * Returns the definition currently deployed for the given API id, or null
+   * when the API (or the ApiManager itself) is not available.
+   */
+  Object deployedDefinition(HttpPlainExecutionContext ctx, String apiId) {
+    if (apiManagerGet == null) {
+      return null;
+    }
+
+    Object manager = apiManager(ctx);
+    if (manager == null) {
+      return null;
+    }
+
+    try {
+      Object reactableApi = (Object) apiManagerGet.invokeExact(manager, apiId);
+      return reactableApi == null ? null : read(reactableApi, "definition");
+    } catch (Throwable e) {
+      LOGGER.debug("Unable to read API [{}] from ApiManager.", apiId, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the definition of the API currently executing the policy.
+   */
+  Object currentApiDefinition(HttpPlainExecutionContext ctx) {
+    for (Class<?> apiClass : apiClasses) {
+      try {
+        @SuppressWarnings("unchecked")
+        Object api = ctx.getComponent((Class<Object>) apiClass);
+        if (api != null) {
+          return api;
+        }
+      } catch (Exception e) {
+        LOGGER.debug("Unable to extract API component [{}]", apiClass, e);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Copies the llm-proxy endpoint groups of a definition into a minimal node
+   * shaped like {@code {"endpointGroups": [...]}}. Returns null when the
+   * definition exposes no endpoint groups.
+   */
+  JsonNode llmProxyEndpointGroups(Object definition) {
+    if (definition == null) {
+      return null;
+    }
+    if (definition instanceof JsonNode node) {
+      return node;
+    }
+
+    Object endpointGroups = read(definition, "endpointGroups");
+    if (!(endpointGroups instanceof Iterable<?> groups)) {
+      return null;
+    }
+
+    ObjectNode apiNode = OBJECT_MAPPER.createObjectNode();
+    ArrayNode groupNodes = apiNode.putArray("endpointGroups");
+    for (Object group : groups) {
+      if (group == null) {
+        continue;
+      }
+
+      Object type = read(group, "type");
+      if (type == null || !LLM_PROXY_GROUP_TYPE.equals(type.toString())) {
+        continue;
+      }
+
+      ObjectNode groupNode = groupNodes.addObject();
+      groupNode.put("type", LLM_PROXY_GROUP_TYPE);
+
+      ArrayNode endpointNodes = groupNode.putArray("endpoints");
+      if (read(group, "endpoints") instanceof Iterable<?> endpoints) {
+        for (Object endpoint : endpoints) {
+          if (endpoint != null) {
+            ObjectNode endpointNode = endpointNodes.addObject();
+            endpointNode.set(
+              "configuration",
+              toNode(read(endpoint, "configuration"))
+            );
+            if (read(endpoint, "weight") instanceof Number weight) {
+              endpointNode.put("weight", weight.intValue());
+            }
+          }
+        }
+      }
+
+      groupNode.set(
+        "sharedConfiguration",
+        toNode(read(group, "sharedConfiguration"))
+      );
+    }
+
+    return apiNode;
+  }
+
+  private Object apiManager(HttpPlainExecutionContext ctx) {
+    Object manager = apiManager;
+    if (manager == null) {
+      @SuppressWarnings("unchecked")
+      Object component = ctx.getComponent((Class<Object>) apiManagerClass);
+      manager = component;
+      apiManager = manager;
+    }
+    return manager;
+  }
+
+  private JsonNode toNode(Object value) {
+    if (value == null) {
+      return OBJECT_MAPPER.missingNode();
+    }
+    if (value instanceof JsonNode node) {
+      return node;
+    }
+
+    try {
+      if (value instanceof CharSequence json) {
+        String raw = json.toString();
+        return raw.isBlank()
+          ? OBJECT_MAPPER.missingNode()
+          : OBJECT_MAPPER.readTree(raw);
+      }
+      return OBJECT_MAPPER.valueToTree(value);
+    } catch (Exception e) {
+      LOGGER.debug("Unable to read endpoint configuration.", e);
+      return OBJECT_MAPPER.missingNode();
+    }
+  }
+
+  private Object read(Object target, String property) {
+    Class<?> type = target.getClass();
+    Optional<MethodHandle> getter = GETTERS.get(type).computeIfAbsent(
+      property,
+      name -> findGetter(type, name)
+    );
+    if (getter.isEmpty()) {
+      return null;
+    }
+
+    try {
+      return (Object) getter.get().invokeExact(target);
+    } catch (Throwable e) {
+      LOGGER.debug("Unable to read [{}] from [{}].", property, type, e);
+      return null;
+    }
+  }
+
+  private static Optional<MethodHandle> findGetter(
+    Class<?> type,
+    String property
+  ) {
+    String capitalized =
+      Character.toUpperCase(property.charAt(0)) + property.substring(1);
+    for (String name : List.of("get" + capitalized, property)) {
+      try {
+        Method method = type.getMethod(name);
+        if (
+          Modifier.isStatic(method.getModifiers()) ||
+          method.getReturnType() == void.class
+        ) {
+          continue;
+        }
+        method.setAccessible(true);
+        return Optional.of(LOOKUP.unreflect(method).asType(GETTER_TYPE));
+      } catch (NoSuchMethodException ignored) {
+        // Try next accessor name.
+      } catch (Exception e) {
+        LOGGER.debug("Accessor [{}] of [{}] is not usable.", name, type, e);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static Class<?> loadClass(String className) {
+    try {
+      return Class.forName(className);
+    } catch (ClassNotFoundException | LinkageError ignored) {
+      return null;
+    }
+  }
+}
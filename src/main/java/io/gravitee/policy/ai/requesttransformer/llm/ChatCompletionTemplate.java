@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chat completion request compiled once per endpoint, prompt and format.
+ *
+ * The payload is serialized with a placeholder user message and split around
+ * it, so building a request only escapes the user content and streams the
+ * pre-encoded prefix, content and suffix into the body publisher. The target
+ * URI and headers are resolved at compile time as well.
+ */
+final class ChatCompletionTemplate {
+
+  static final String USER_CONTENT_PLACEHOLDER = "\u0000user-content\u0000";
+
+  private static final JsonStringEncoder ENCODER =
+    JsonStringEncoder.getInstance();
+
+  private final URI uri;
+  private final byte[] prefix;
+  private final byte[] suffix;
+  private final String[] headers;
+
+  private ChatCompletionTemplate(
+    URI uri,
+    byte[] prefix,
+    byte[] suffix,
+    String[] headers
+  ) {
+    this.uri = uri;
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.headers = headers;
+  }
+
+  /**
+   * @param payload payload serialized with {@link #USER_CONTENT_PLACEHOLDER}
+   *                as the user message content
+   * @param headers header names and values, alternating
+   */
+  static ChatCompletionTemplate compile(
+    URI uri,
+    byte[] payload,
+    List<String> headers
+  ) {
+    byte[] placeholder = ENCODER.quoteAsUTF8(USER_CONTENT_PLACEHOLDER);
+    // The user message follows the system message, so the last occurrence is
+    // the placeholder even when the prompt happens to contain it.
+    int index = lastIndexOf(payload, placeholder);
+    if (index < 0) {
+      throw new IllegalArgumentException(
+        "Payload does not contain the user content placeholder."
+      );
+    }
+
+    return new ChatCompletionTemplate(
+      uri,
+      Arrays.copyOfRange(payload, 0, index),
+      Arrays.copyOfRange(payload, index + placeholder.length, payload.length),
+      headers.toArray(String[]::new)
+    );
+  }
+
+  HttpRequest request(String userContent, int timeoutMs) {
+    byte[] content = encode(userContent);
+    return HttpRequest.newBuilder(uri)
+      .timeout(Duration.ofMillis(Math.max(timeoutMs, 1)))
+      .headers(headers)
+      .POST(
+        HttpRequest.BodyPublishers.fromPublisher(
+          HttpRequest.BodyPublishers.ofByteArrays(
+            List.of(prefix, content, suffix)
+          ),
+          (long) prefix.length + content.length + suffix.length
+        )
+      )
+      .build();
+  }
+
+  URI uri() {
+    return uri;
+  }
+
+  /**
+   * Header names and values, alternating.
+   */
+  String[] headers() {
+    return headers;
+  }
+
+  /**
+   * Body as a composite buffer over the shared prefix and suffix, so only the
+   * escaped user content is allocated.
+   */
+  ByteBuf bodyBuffer(String userContent) {
+    return Unpooled.wrappedBuffer(prefix, encode(userContent), suffix);
+  }
+
+  byte[] body(String userContent) {
+    byte[] content = encode(userContent);
+    byte[] body = Arrays.copyOf(
+      prefix,
+      prefix.length + content.length + suffix.length
+    );
+    System.arraycopy(content, 0, body, prefix.length, content.length);
+    System.arraycopy(
+      suffix,
+      0,
+      body,
+      prefix.length + content.length,
+      suffix.length
+    );
+    return body;
+  }
+
+  private static byte[] encode(String userContent) {
+    if (userContent == null || userContent.isEmpty()) {
+      return new byte[0];
+    }
+    return ENCODER.quoteAsUTF8(userContent);
+  }
+
+  private static int lastIndexOf(byte[] source, byte[] target) {
+    for (int i = source.length - target.length; i >= 0; i--) {
+      if (
+        Arrays.equals(source, i, i + target.length, target, 0, target.length)
+      ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
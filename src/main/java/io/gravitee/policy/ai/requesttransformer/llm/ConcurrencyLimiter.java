@@ -0,0 +1,375 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeEmitter;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.CompositeDisposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.vertx.core.http.HttpClosedException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit on the concurrent calls to one LLM endpoint.
+ *
+ * The limit follows AIMD driven by latency: a call that completes within
+ * latencyTolerance times the lowest recently observed latency raises the
+ * limit by one while the endpoint is busy, and a slower call, a timeout or
+ * an overload answer (429, 5xx, connection error) cuts it by 10%. The lowest
+ * latency is re-sampled periodically to follow provider drift.
+ *
+ * Calls over the limit wait in a bounded FIFO queue. Each waiter carries its
+ * deadline: a call that cannot start before it, because the queue is full,
+ * the expected wait is longer than its remaining time, or the deadline
+ * expires while queued, fails with {@link LimitExceededException} without
+ * being sent.
+ *
+ * Limiters obtained through {@link #shared} are gateway-wide: every policy
+ * instance calling the same endpoint target counts against one limit.
+ */
+public final class ConcurrencyLimiter {
+
+  private static final ConcurrentMap<String, ConcurrencyLimiter> SHARED =
+    new ConcurrentHashMap<>();
+
+  static final double BACKOFF_RATIO = 0.9;
+  static final int MIN_LATENCY_RESET_SAMPLES = 500;
+
+  private static final int QUEUED = 0;
+  private static final int RUNNING = 1;
+  private static final int DONE = 2;
+
+  private final String name;
+  private final Scheduler scheduler;
+
+  private final ArrayDeque<Waiter<?>> queue = new ArrayDeque<>();
+  private int minLimit;
+  private int maxLimit;
+  private int maxQueueSize;
+  private double latencyTolerance;
+  private double limit;
+  private int inFlight;
+  private long minLatencyNanos = Long.MAX_VALUE;
+  private double avgLatencyNanos = -1;
+  private int samples;
+
+  public ConcurrencyLimiter(
+    String name,
+    int initialLimit,
+    int minLimit,
+    int maxLimit,
+    int maxQueueSize,
+    double latencyTolerance
+  ) {
+    this(
+      name,
+      initialLimit,
+      minLimit,
+      maxLimit,
+      maxQueueSize,
+      latencyTolerance,
+      Schedulers.computation()
+    );
+  }
+
+  ConcurrencyLimiter(
+    String name,
+    int initialLimit,
+    int minLimit,
+    int maxLimit,
+    int maxQueueSize,
+    double latencyTolerance,
+    Scheduler scheduler
+  ) {
+    this.name = name;
+    this.scheduler = scheduler;
+    this.limit = initialLimit;
+    limits(minLimit, maxLimit, maxQueueSize, latencyTolerance);
+  }
+
+  /**
+   * Returns the gateway-wide limiter of an endpoint target, creating it on
+   * first use. When another policy configures different bounds for the same
+   * target, the limiter keeps its current limit, clamped to the latest
+   * bounds.
+   */
+  public static ConcurrencyLimiter shared(
+    String target,
+    int initialLimit,
+    int minLimit,
+    int maxLimit,
+    int maxQueueSize,
+    double latencyTolerance
+  ) {
+    ConcurrencyLimiter limiter = SHARED.computeIfAbsent(target, key ->
+      new ConcurrencyLimiter(
+        target,
+        initialLimit,
+        minLimit,
+        maxLimit,
+        maxQueueSize,
+        latencyTolerance
+      )
+    );
+    limiter.limits(minLimit, maxLimit, maxQueueSize, latencyTolerance);
+    return limiter;
+  }
+
+  private synchronized void limits(
+    int minLimit,
+    int maxLimit,
+    int maxQueueSize,
+    double latencyTolerance
+  ) {
+    this.minLimit = Math.max(minLimit, 1);
+    this.maxLimit = Math.max(maxLimit, this.minLimit);
+    this.maxQueueSize = Math.max(maxQueueSize, 0);
+    this.latencyTolerance = Math.max(latencyTolerance, 1);
+    this.limit = Math.min(Math.max(limit, this.minLimit), this.maxLimit);
+  }
+
+  /**
+   * Runs the call once a slot is free and its deadline, timeoutMs from now
+   * (0 = none), still allows it.
+   */
+  public <T> Maybe<T> limit(Maybe<T> call, long timeoutMs) {
+    return Maybe.create(emitter -> {
+      long now = scheduler.now(TimeUnit.NANOSECONDS);
+      long deadline = timeoutMs > 0
+        ? now + TimeUnit.MILLISECONDS.toNanos(timeoutMs)
+        : Long.MAX_VALUE;
+      Waiter<T> waiter = new Waiter<>(call, emitter, deadline);
+      emitter.setCancellable(waiter::cancel);
+
+      String rejection = null;
+      boolean start = false;
+      synchronized (this) {
+        if (queue.isEmpty() && inFlight < currentLimit()) {
+          inFlight++;
+          start = true;
+        } else if (queue.size() >= maxQueueSize) {
+          rejection = "queue is full";
+        } else if (deadline - now <= expectedWaitNanos()) {
+          rejection = "deadline expires before a slot frees up";
+        } else {
+          queue.addLast(waiter);
+        }
+      }
+
+      if (start) {
+        waiter.start();
+      } else if (rejection != null) {
+        waiter.shed(rejection);
+      } else if (deadline != Long.MAX_VALUE) {
+        waiter.resources.add(
+          scheduler.scheduleDirect(
+            waiter::expire,
+            deadline - now,
+            TimeUnit.NANOSECONDS
+          )
+        );
+      }
+    });
+  }
+
+  public synchronized int currentLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  public synchronized int queueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Whether the error tells the endpoint is overloaded, as opposed to a
+   * request-specific failure.
+   */
+  static boolean isOverload(Throwable throwable) {
+    if (
+      throwable instanceof TimeoutException ||
+      throwable instanceof IOException ||
+      throwable instanceof HttpClosedException
+    ) {
+      return true;
+    }
+    if (throwable instanceof TransformerLlmClient.LlmStatusException e) {
+      return e.statusCode() == 429 || e.statusCode() >= 500;
+    }
+    return false;
+  }
+
+  private long expectedWaitNanos() {
+    if (avgLatencyNanos < 0) {
+      return 0;
+    }
+    // The queue drains about currentLimit() calls per average latency.
+    return (long) (((queue.size() + 1) * avgLatencyNanos) / currentLimit());
+  }
+
+  private void onEnd(boolean sampled, boolean overloaded, long latencyNanos) {
+    List<Waiter<?>> granted = new ArrayList<>();
+    List<Waiter<?>> expired = new ArrayList<>();
+    synchronized (this) {
+      if (sampled) {
+        adjust(overloaded, latencyNanos);
+      }
+      inFlight--;
+
+      long now = scheduler.now(TimeUnit.NANOSECONDS);
+      Iterator<Waiter<?>> waiters = queue.iterator();
+      while (waiters.hasNext() && inFlight < currentLimit()) {
+        Waiter<?> waiter = waiters.next();
+        waiters.remove();
+        if (waiter.deadline - now <= 0) {
+          expired.add(waiter);
+        } else {
+          inFlight++;
+          granted.add(waiter);
+        }
+      }
+    }
+
+    expired.forEach(waiter -> waiter.shed("deadline expired in queue"));
+    granted.forEach(Waiter::start);
+  }
+
+  private void adjust(boolean overloaded, long latencyNanos) {
+    if (!overloaded) {
+      if (++samples >= MIN_LATENCY_RESET_SAMPLES) {
+        samples = 0;
+        minLatencyNanos = latencyNanos;
+      } else {
+        minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+      }
+      avgLatencyNanos = avgLatencyNanos < 0
+        ? latencyNanos
+        : avgLatencyNanos + 0.2 * (latencyNanos - avgLatencyNanos);
+    }
+
+    if (overloaded || latencyNanos > minLatencyNanos * latencyTolerance) {
+      limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+    } else if (inFlight * 2 >= limit) {
+      // Only grow while the current limit is actually in use.
+      limit = Math.min(maxLimit, limit + 1);
+    }
+  }
+
+  private boolean dequeue(Waiter<?> waiter) {
+    synchronized (this) {
+      return queue.remove(waiter);
+    }
+  }
+
+  private final class Waiter<T> {
+
+    private final Maybe<T> call;
+    private final MaybeEmitter<T> emitter;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(QUEUED);
+    private final CompositeDisposable resources = new CompositeDisposable();
+
+    Waiter(Maybe<T> call, MaybeEmitter<T> emitter, long deadline) {
+      this.call = call;
+      this.emitter = emitter;
+      this.deadline = deadline;
+    }
+
+    void start() {
+      if (!state.compareAndSet(QUEUED, RUNNING)) {
+        // Cancelled while the slot was being granted.
+        onEnd(false, false, 0);
+        return;
+      }
+
+      long startedAt = scheduler.now(TimeUnit.NANOSECONDS);
+      resources.add(
+        call.subscribe(
+          value -> {
+            finish(false, startedAt);
+            emitter.onSuccess(value);
+          },
+          error -> {
+            finish(isOverload(error), startedAt);
+            emitter.tryOnError(error);
+          },
+          () -> {
+            finish(false, startedAt);
+            emitter.onComplete();
+          }
+        )
+      );
+    }
+
+    void expire() {
+      if (dequeue(this)) {
+        shed("deadline expired in queue");
+      }
+    }
+
+    void shed(String reason) {
+      if (state.compareAndSet(QUEUED, DONE)) {
+        resources.dispose();
+        emitter.tryOnError(new LimitExceededException(name, reason));
+      }
+    }
+
+    void cancel() {
+      resources.dispose();
+      int previous = state.getAndSet(DONE);
+      if (previous == QUEUED) {
+        dequeue(this);
+      } else if (previous == RUNNING) {
+        onEnd(false, false, 0);
+      }
+    }
+
+    private void finish(boolean overloaded, long startedAt) {
+      if (state.compareAndSet(RUNNING, DONE)) {
+        onEnd(
+          true,
+          overloaded,
+          scheduler.now(TimeUnit.NANOSECONDS) - startedAt
+        );
+      }
+    }
+  }
+
+  /**
+   * Signals a call shed by the concurrency limiter before it was sent.
+   */
+  public static final class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(String name, String reason) {
+      super(
+        "concurrency limit reached for LLM endpoint " + name + ": " + reason
+      );
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker guarding the calls to one LLM endpoint.
+ *
+ * Outcomes of the last slidingWindowSize calls are kept. Once at least
+ * minimumCalls are recorded, the circuit opens when the share of failed
+ * calls reaches failureRateThreshold, or the share of calls slower than
+ * slowCallDurationMs reaches slowCallRateThreshold. While open, calls are
+ * rejected without touching the network. After openStateMs the circuit is
+ * half-open: halfOpenCalls probes are let through, and it closes when they
+ * all succeed in time, or opens again on the first failed or slow probe.
+ */
+public final class EndpointCircuitBreaker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    EndpointCircuitBreaker.class
+  );
+
+  private static final byte RECORDED = 1;
+  private static final byte FAILED = 2;
+  private static final byte SLOW = 4;
+
+  private final String name;
+  private final int failureRateThreshold;
+  private final int slowCallRateThreshold;
+  private final long slowCallNanos;
+  private final int minimumCalls;
+  private final long openStateNanos;
+  private final int halfOpenCalls;
+  private final LongSupplier nanoTime;
+
+  private final byte[] outcomes;
+  private int next;
+  private int calls;
+  private int failures;
+  private int slowCalls;
+
+  private volatile State state = State.CLOSED;
+  private long openUntilNanos;
+  private int halfOpenPermits;
+  private int halfOpenSuccesses;
+
+  public EndpointCircuitBreaker(
+    String name,
+    int failureRateThreshold,
+    int slowCallRateThreshold,
+    long slowCallDurationMs,
+    int minimumCalls,
+    int slidingWindowSize,
+    long openStateMs,
+    int halfOpenCalls
+  ) {
+    this(
+      name,
+      failureRateThreshold,
+      slowCallRateThreshold,
+      slowCallDurationMs,
+      minimumCalls,
+      slidingWindowSize,
+      openStateMs,
+      halfOpenCalls,
+      System::nanoTime
+    );
+  }
+
+  EndpointCircuitBreaker(
+    String name,
+    int failureRateThreshold,
+    int slowCallRateThreshold,
+    long slowCallDurationMs,
+    int minimumCalls,
+    int slidingWindowSize,
+    long openStateMs,
+    int halfOpenCalls,
+    LongSupplier nanoTime
+  ) {
+    this.name = name;
+    this.failureRateThreshold = Math.min(
+      Math.max(failureRateThreshold, 1),
+      100
+    );
+    this.slowCallRateThreshold = Math.min(
+      Math.max(slowCallRateThreshold, 1),
+      100
+    );
+    this.slowCallNanos = slowCallDurationMs > 0
+      ? TimeUnit.MILLISECONDS.toNanos(slowCallDurationMs)
+      : Long.MAX_VALUE;
+    this.outcomes = new byte[Math.max(slidingWindowSize, 1)];
+    this.minimumCalls = Math.min(Math.max(minimumCalls, 1), outcomes.length);
+    this.openStateNanos = TimeUnit.MILLISECONDS.toNanos(
+      Math.max(openStateMs, 0)
+    );
+    this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Asks for permission to call the endpoint. Every granted call must be
+   * followed by {@link #onResult} or {@link #release}.
+   */
+  public boolean tryAcquire() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    synchronized (this) {
+      if (state == State.OPEN) {
+        if (nanoTime.getAsLong() - openUntilNanos < 0) {
+          return false;
+        }
+        state = State.HALF_OPEN;
+        halfOpenPermits = halfOpenCalls;
+        halfOpenSuccesses = 0;
+      }
+      if (state == State.HALF_OPEN) {
+        if (halfOpenPermits == 0) {
+          return false;
+        }
+        halfOpenPermits--;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Records the outcome of a granted call.
+   */
+  public synchronized void onResult(boolean failed, long durationNanos) {
+    boolean slow = durationNanos >= slowCallNanos;
+    if (state == State.HALF_OPEN) {
+      if (failed || slow) {
+        open();
+      } else if (++halfOpenSuccesses >= halfOpenCalls) {
+        close();
+      }
+      return;
+    }
+    if (state == State.OPEN) {
+      // A call granted before the circuit opened.
+      return;
+    }
+
+    byte outcome = (byte) (RECORDED |
+      (failed ? FAILED : 0) |
+      (slow ? SLOW : 0));
+    forget(outcomes[next]);
+    outcomes[next] = outcome;
+    next = (next + 1) % outcomes.length;
+    calls++;
+    failures += failed ? 1 : 0;
+    slowCalls += slow ? 1 : 0;
+
+    if (
+      calls >= minimumCalls &&
+      (failures * 100 >= failureRateThreshold * calls ||
+        slowCalls * 100 >= slowCallRateThreshold * calls)
+    ) {
+      open();
+    }
+  }
+
+  /**
+   * Gives back a granted call that ended without an outcome, e.g. because it
+   * was cancelled.
+   */
+  public synchronized void release() {
+    if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+      halfOpenPermits++;
+    }
+  }
+
+  public State state() {
+    State current = state;
+    if (current == State.OPEN) {
+      synchronized (this) {
+        return nanoTime.getAsLong() - openUntilNanos < 0
+          ? State.OPEN
+          : State.HALF_OPEN;
+      }
+    }
+    return current;
+  }
+
+  private void forget(byte outcome) {
+    if ((outcome & RECORDED) == 0) {
+      return;
+    }
+    calls--;
+    failures -= (outcome & FAILED) != 0 ? 1 : 0;
+    slowCalls -= (outcome & SLOW) != 0 ? 1 : 0;
+  }
+
+  private void open() {
+    if (state != State.OPEN) {
+      LOGGER.warn(
+        "LLM endpoint [{}] circuit opened ({} failed, {} slow of {} calls).",
+        name,
+        failures,
+        slowCalls,
+        calls
+      );
+    }
+    state = State.OPEN;
+    openUntilNanos = nanoTime.getAsLong() + openStateNanos;
+    reset();
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    reset();
+    LOGGER.info("LLM endpoint [{}] circuit closed.", name);
+  }
+
+  private void reset() {
+    Arrays.fill(outcomes, (byte) 0);
+    next = 0;
+    calls = 0;
+    failures = 0;
+    slowCalls = 0;
+  }
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN,
+  }
+
+  /**
+   * Signals a call rejected because the endpoint circuit is open.
+   */
+  public static final class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String name) {
+      super("circuit breaker is open for LLM endpoint " + name);
+    }
+  }
+}
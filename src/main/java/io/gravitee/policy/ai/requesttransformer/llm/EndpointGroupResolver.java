@@ -16,217 +16,249 @@
 package io.gravitee.policy.ai.requesttransformer.llm;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.gravitee.gateway.reactive.api.context.http.HttpPlainExecutionContext;
 import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration;
 import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration.AuthType;
 import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration.LlmSourceMode;
-import java.lang.reflect.Method;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.Base64;
+import io.reactivex.rxjava3.core.Maybe;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Resolves the target LLM endpoint using three modes:
- * 1) Selected external LLM Proxy API id (llmProxyApiId) via gateway ApiManager.
+ * 1) Selected external LLM Proxy API id (llmProxyApiId) via gateway ApiManager,
+ *    falling back to a guarded management API lookup when it is not deployed.
  * 2) LLM Proxy endpoint-group metadata exposed by the current API definition.
  * 3) Direct policy configuration fallback (llm.endpoint / llm.auth / llm.model).
+ *
+ * Non-inline resolutions are cached for endpointCacheTtlMs and dropped as soon
+ * as the gateway holds a different deployment of the referenced API.
  */
 public class EndpointGroupResolver {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(
     EndpointGroupResolver.class
   );
-  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-
-  private static final String API_MANAGER_CLASS =
-    "io.gravitee.gateway.handlers.api.manager.ApiManager";
-
-  private static final String MAPI_URL_ENV =
-    "GRAVITEE_POLICY_LLM_PROXY_MAPI_URL";
-  private static final String MAPI_BASIC_AUTH_ENV =
-    "GRAVITEE_POLICY_LLM_PROXY_MAPI_BASIC_AUTH";
-  private static final String DEFAULT_MAPI_URL =
-    "http://management_api:8083/management";
-  private static final String DEFAULT_MAPI_BASIC_AUTH = "admin:admin";
-
-  private final HttpClient managementHttpClient = HttpClient.newBuilder()
-    .connectTimeout(Duration.ofSeconds(2))
-    .build();
-
-  private static final List<String> API_CLASS_CANDIDATES = List.of(
-    "io.gravitee.definition.model.v4.Api",
-    "io.gravitee.definition.model.Api"
-  );
 
-  public ResolvedEndpoint resolve(
+  static final String METRIC_MAPI_LOOKUP =
+    "keyword_ai-request-transformer_mapi-lookup";
+  static final String METRIC_MAPI_CIRCUIT_STATE =
+    "keyword_ai-request-transformer_mapi-circuit-state";
+
+  private final ConcurrentMap<CacheKey, CachedEndpoint> endpointCache =
+    new ConcurrentHashMap<>();
+
+  private final ApiDefinitionBridge apiBridge;
+  private final ManagementApiLookup managementApi;
+
+  public EndpointGroupResolver() {
+    this(new ApiDefinitionBridge(), ManagementApiLookup.shared());
+  }
+
+  EndpointGroupResolver(ApiDefinitionBridge apiBridge) {
+    this(apiBridge, ManagementApiLookup.shared());
+  }
+
+  EndpointGroupResolver(
+    ApiDefinitionBridge apiBridge,
+    ManagementApiLookup managementApi
+  ) {
+    this.apiBridge = apiBridge;
+    this.managementApi = managementApi;
+  }
+
+  /**
+   * Resolves the endpoint without blocking. Completes empty when no endpoint
+   * can be resolved; only a management API lookup ever completes
+   * asynchronously. When the llm-proxy group holds several endpoints, one is
+   * picked with the configured load-balancing strategy.
+   */
+  public Maybe<ResolvedEndpoint> resolve(
+    HttpPlainExecutionContext ctx,
+    AiRequestTransformerPolicyConfiguration configuration
+  ) {
+    return resolvePool(ctx, configuration).map(pool ->
+      pool.select(configuration.getLoadBalancing())
+    );
+  }
+
+  /**
+   * Resolves every usable endpoint of the llm-proxy endpoint group.
+   */
+  public Maybe<EndpointPool> resolvePool(
+    HttpPlainExecutionContext ctx,
+    AiRequestTransformerPolicyConfiguration configuration
+  ) {
+    return Maybe.defer(() -> resolveCached(ctx, configuration));
+  }
+
+  private Maybe<EndpointPool> resolveCached(
     HttpPlainExecutionContext ctx,
     AiRequestTransformerPolicyConfiguration configuration
   ) {
     LlmSourceMode mode = configuration.getLlmSourceMode();
 
     if (mode == LlmSourceMode.INLINE) {
-      return resolveFromDirectConfiguration(configuration);
+      return Maybe.fromCallable(() -> directPool(configuration));
     }
 
-    if (mode == LlmSourceMode.LLM_PROXY_API) {
-      return resolveFromSelectedOrManagementApi(
-        ctx,
-        configuration.getLlmProxyApiId(),
-        configuration.getLlmModel()
-      );
+    long ttlMs = configuration.getEndpointCacheTtlMs();
+    if (ttlMs <= 0) {
+      return resolveUncached(ctx, configuration);
     }
 
-    // Backward-compatible fallback when mode is absent.
-    ResolvedEndpoint fromSelectedOrManagementApi =
+    CacheKey key = new CacheKey(
+      blankToNull(configuration.getLlmProxyApiId()),
+      mode,
+      blankToNull(configuration.getLlmModel())
+    );
+    Object deployment = currentDeployment(ctx, key.llmProxyApiId());
+    long now = System.nanoTime();
+
+    CachedEndpoint cached = endpointCache.get(key);
+    if (cached != null && cached.isValid(now, deployment)) {
+      return Maybe.just(cached.pool());
+    }
+
+    return resolveUncached(ctx, configuration)
+      .doOnSuccess(resolved ->
+        endpointCache.put(
+          key,
+          new CachedEndpoint(
+            resolved,
+            new WeakReference<>(deployment),
+            now + TimeUnit.MILLISECONDS.toNanos(ttlMs)
+          )
+        )
+      )
+      .doOnComplete(() -> endpointCache.remove(key));
+  }
+
+  private Maybe<EndpointPool> resolveUncached(
+    HttpPlainExecutionContext ctx,
+    AiRequestTransformerPolicyConfiguration configuration
+  ) {
+    LlmSourceMode mode = configuration.getLlmSourceMode();
+
+    Maybe<EndpointPool> fromSelectedOrManagementApi =
       resolveFromSelectedOrManagementApi(
         ctx,
         configuration.getLlmProxyApiId(),
         configuration.getLlmModel()
       );
-    if (fromSelectedOrManagementApi != null) {
+    if (mode == LlmSourceMode.LLM_PROXY_API) {
       return fromSelectedOrManagementApi;
     }
 
-    ResolvedEndpoint fromCurrentApi = resolveFromCurrentApiComponent(
-      ctx,
-      configuration.getLlmModel()
-    );
-    if (fromCurrentApi != null) {
-      return fromCurrentApi;
-    }
-
-    return resolveFromDirectConfiguration(configuration);
+    // Backward-compatible fallback when mode is absent.
+    return fromSelectedOrManagementApi
+      .switchIfEmpty(
+        Maybe.fromCallable(() ->
+          resolveFromCurrentApiComponent(ctx, configuration.getLlmModel())
+        )
+      )
+      .switchIfEmpty(
+        Maybe.fromCallable(() -> directPool(configuration))
+      );
   }
 
-  private ResolvedEndpoint resolveFromSelectedOrManagementApi(
+  private Maybe<EndpointPool> resolveFromSelectedOrManagementApi(
     HttpPlainExecutionContext ctx,
     String llmProxyApiIdRaw,
     String modelOverride
   ) {
     String llmProxyApiId = blankToNull(llmProxyApiIdRaw);
     if (llmProxyApiId == null) {
-      return null;
+      return Maybe.empty();
     }
 
-    ResolvedEndpoint fromSelectedApi = resolveFromSelectedLlmProxyApi(
-      ctx,
-      llmProxyApiId,
-      modelOverride
+    return Maybe.fromCallable(() ->
+      resolveFromSelectedLlmProxyApi(ctx, llmProxyApiId, modelOverride)
+    ).switchIfEmpty(
+      Maybe.defer(() ->
+        resolveFromManagementApi(ctx, llmProxyApiId, modelOverride)
+      )
     );
-    if (fromSelectedApi != null) {
-      return fromSelectedApi;
-    }
-
-    return resolveFromManagementApi(llmProxyApiId, modelOverride);
   }
 
-  private ResolvedEndpoint resolveFromSelectedLlmProxyApi(
+  private EndpointPool resolveFromSelectedLlmProxyApi(
     HttpPlainExecutionContext ctx,
     String llmProxyApiId,
     String modelOverride
   ) {
-    try {
-      Class<?> apiManagerClass = Class.forName(API_MANAGER_CLASS);
-      @SuppressWarnings("unchecked")
-      Object apiManager = ctx.getComponent((Class<Object>) apiManagerClass);
-
-      if (apiManager == null) {
-        return null;
-      }
-
-      Method getMethod = apiManagerClass.getMethod("get", String.class);
-      Object reactableApi = getMethod.invoke(apiManager, llmProxyApiId);
-      if (reactableApi == null) {
-        LOGGER.debug(
-          "Selected llmProxyApiId [{}] is not deployed in gateway ApiManager.",
-          llmProxyApiId
-        );
-        return null;
-      }
-
-      Method getDefinitionMethod = reactableApi
-        .getClass()
-        .getMethod("getDefinition");
-      Object apiDefinition = getDefinitionMethod.invoke(reactableApi);
-      JsonNode apiNode = OBJECT_MAPPER.valueToTree(apiDefinition);
-
-      return resolveFromApiNode(apiNode, modelOverride);
-    } catch (ClassNotFoundException ignored) {
-      return null;
-    } catch (Exception e) {
+    Object apiDefinition = apiBridge.deployedDefinition(ctx, llmProxyApiId);
+    if (apiDefinition == null) {
       LOGGER.debug(
-        "Unable to resolve selected llmProxyApiId [{}] from ApiManager.",
-        llmProxyApiId,
-        e
+        "Selected llmProxyApiId [{}] is not deployed in gateway ApiManager.",
+        llmProxyApiId
       );
       return null;
     }
+
+    return resolveFromApiNode(
+      apiBridge.llmProxyEndpointGroups(apiDefinition),
+      modelOverride
+    );
+  }
+
+  /**
+   * Identifies the deployment a cached endpoint was resolved from. A redeploy
+   * replaces the definition instance held by the gateway, which invalidates
+   * any entry cached against the previous one.
+   */
+  private Object currentDeployment(
+    HttpPlainExecutionContext ctx,
+    String llmProxyApiId
+  ) {
+    return llmProxyApiId != null
+      ? apiBridge.deployedDefinition(ctx, llmProxyApiId)
+      : apiBridge.currentApiDefinition(ctx);
   }
 
-  private ResolvedEndpoint resolveFromManagementApi(
+  private Maybe<EndpointPool> resolveFromManagementApi(
+    HttpPlainExecutionContext ctx,
     String llmProxyApiId,
     String modelOverride
   ) {
-    try {
-      String baseUrl = firstNonBlank(
-        blankToNull(System.getenv(MAPI_URL_ENV)),
-        DEFAULT_MAPI_URL
+    return managementApi
+      .lookup(llmProxyApiId)
+      .doOnSuccess(lookup -> {
+        ctx
+          .metrics()
+          .putAdditionalKeywordMetric(
+            METRIC_MAPI_LOOKUP,
+            lookup.outcome().name()
+          );
+        ctx
+          .metrics()
+          .putAdditionalKeywordMetric(
+            METRIC_MAPI_CIRCUIT_STATE,
+            managementApi.circuitState().name()
+          );
+      })
+      .mapOptional(lookup ->
+        Optional.ofNullable(resolveFromApiNode(lookup.api(), modelOverride))
       );
-      String basicAuth = firstNonBlank(
-        blankToNull(System.getenv(MAPI_BASIC_AUTH_ENV)),
-        DEFAULT_MAPI_BASIC_AUTH
-      );
-
-      HttpRequest request = HttpRequest.newBuilder()
-        .uri(
-          URI.create(baseUrl + "/v2/environments/DEFAULT/apis/" + llmProxyApiId)
-        )
-        .timeout(Duration.ofSeconds(3))
-        .header("Authorization", "Basic " + encodeBasicAuth(basicAuth))
-        .GET()
-        .build();
-
-      HttpResponse<String> response = managementHttpClient.send(
-        request,
-        HttpResponse.BodyHandlers.ofString()
-      );
-      if (response.statusCode() < 200 || response.statusCode() >= 300) {
-        LOGGER.debug(
-          "Unable to resolve llmProxyApiId [{}] from management API, status [{}].",
-          llmProxyApiId,
-          response.statusCode()
-        );
-        return null;
-      }
-
-      JsonNode apiNode = OBJECT_MAPPER.readTree(response.body());
-      return resolveFromApiNode(apiNode, modelOverride);
-    } catch (Exception e) {
-      LOGGER.debug(
-        "Unable to resolve llmProxyApiId [{}] from management API.",
-        llmProxyApiId,
-        e
-      );
-      return null;
-    }
   }
 
-  private ResolvedEndpoint resolveFromCurrentApiComponent(
+  private EndpointPool resolveFromCurrentApiComponent(
     HttpPlainExecutionContext ctx,
     String modelOverride
   ) {
-    JsonNode apiNode = extractApiNode(ctx);
+    JsonNode apiNode = apiBridge.llmProxyEndpointGroups(
+      apiBridge.currentApiDefinition(ctx)
+    );
     return resolveFromApiNode(apiNode, modelOverride);
   }
 
-  private ResolvedEndpoint resolveFromApiNode(
+  private EndpointPool resolveFromApiNode(
     JsonNode apiNode,
     String modelOverride
   ) {
@@ -244,22 +276,24 @@ public class EndpointGroupResolver {
         continue;
       }
 
-      ResolvedEndpoint fromEndpoint = resolveFromEndpointGroup(
+      EndpointPool fromGroup = resolveFromEndpointGroup(
         endpointGroup,
         modelOverride
       );
-      if (fromEndpoint != null) {
-        return fromEndpoint;
+      if (fromGroup != null) {
+        return fromGroup;
       }
     }
 
     return null;
   }
 
-  private ResolvedEndpoint resolveFromEndpointGroup(
+  private EndpointPool resolveFromEndpointGroup(
     JsonNode endpointGroup,
     String modelOverride
   ) {
+    List<ResolvedEndpoint> resolvedEndpoints = new ArrayList<>();
+    List<Integer> weights = new ArrayList<>();
     JsonNode endpoints = endpointGroup.path("endpoints");
     if (endpoints.isArray()) {
       for (JsonNode endpoint : endpoints) {
@@ -268,15 +302,20 @@ public class EndpointGroupResolver {
           modelOverride
         );
         if (resolved != null) {
-          return resolved;
+          resolvedEndpoints.add(resolved);
+          weights.add(endpoint.path("weight").asInt(1));
         }
       }
     }
+    if (!resolvedEndpoints.isEmpty()) {
+      return new EndpointPool(resolvedEndpoints, weights);
+    }
 
-    return resolveFromConfigurationNode(
+    ResolvedEndpoint shared = resolveFromConfigurationNode(
       endpointGroup.path("sharedConfiguration"),
       modelOverride
     );
+    return shared == null ? null : EndpointPool.of(shared);
   }
 
   private ResolvedEndpoint resolveFromConfigurationNode(
@@ -326,23 +365,11 @@ public class EndpointGroupResolver {
     return new ResolvedEndpoint(target, authHeader, authValue, model);
   }
 
-  private JsonNode extractApiNode(HttpPlainExecutionContext ctx) {
-    for (String className : API_CLASS_CANDIDATES) {
-      try {
-        Class<?> apiClass = Class.forName(className);
-        @SuppressWarnings("unchecked")
-        Object api = ctx.getComponent((Class<Object>) apiClass);
-        if (api != null) {
-          return OBJECT_MAPPER.valueToTree(api);
-        }
-      } catch (ClassNotFoundException ignored) {
-        // Try next candidate.
-      } catch (Exception e) {
-        LOGGER.debug("Unable to extract API component [{}]", className, e);
-      }
-    }
-
-    return null;
+  private EndpointPool directPool(
+    AiRequestTransformerPolicyConfiguration configuration
+  ) {
+    ResolvedEndpoint endpoint = resolveFromDirectConfiguration(configuration);
+    return endpoint == null ? null : EndpointPool.of(endpoint);
   }
 
   private ResolvedEndpoint resolveFromDirectConfiguration(
@@ -400,10 +427,6 @@ public class EndpointGroupResolver {
     return null;
   }
 
-  private String encodeBasicAuth(String auth) {
-    return Base64.getEncoder().encodeToString(auth.getBytes());
-  }
-
   private String firstNonBlank(String... values) {
     if (values == null) {
       return null;
@@ -425,4 +448,22 @@ public class EndpointGroupResolver {
   private boolean isBlank(String value) {
     return value == null || value.isBlank();
   }
+
+  private record CacheKey(
+    String llmProxyApiId,
+    LlmSourceMode mode,
+    String modelOverride
+  ) {}
+
+  private record CachedEndpoint(
+    EndpointPool pool,
+    WeakReference<Object> deployment,
+    long expiresAtNanos
+  ) {
+    boolean isValid(long nowNanos, Object currentDeployment) {
+      return (
+        nowNanos - expiresAtNanos < 0 && deployment.get() == currentDeployment
+      );
+    }
+  }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration.LoadBalancing;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Endpoints of an llm-proxy endpoint group, with selection strategies:
+ * weighted round-robin, least outstanding requests, and latency-aware
+ * selection scoring each endpoint by its response-time EWMA multiplied by
+ * its calls in flight. Selection is lock-free.
+ *
+ * Endpoints with a weight of 0 are left out of the pool, unless every
+ * endpoint has a weight of 0.
+ */
+public final class EndpointPool {
+
+  private final List<ResolvedEndpoint> endpoints;
+  private final int[] cumulativeWeights;
+  private final AtomicLong cursor = new AtomicLong();
+
+  EndpointPool(List<ResolvedEndpoint> endpoints, List<Integer> weights) {
+    if (endpoints.isEmpty()) {
+      throw new IllegalArgumentException("Endpoint pool must not be empty.");
+    }
+    boolean weighted = weights.stream().anyMatch(weight -> weight > 0);
+    List<ResolvedEndpoint> selectable = new ArrayList<>(endpoints.size());
+    List<Integer> selectableWeights = new ArrayList<>(endpoints.size());
+    for (int i = 0; i < endpoints.size(); i++) {
+      if (!weighted || weights.get(i) > 0) {
+        // Selected endpoints carry their pool, for backup selection.
+        selectable.add(endpoints.get(i).inPool(this));
+        selectableWeights.add(weighted ? weights.get(i) : 1);
+      }
+    }
+    this.endpoints = List.copyOf(selectable);
+    this.cumulativeWeights = new int[selectable.size()];
+    int total = 0;
+    for (int i = 0; i < selectable.size(); i++) {
+      total += selectableWeights.get(i);
+      cumulativeWeights[i] = total;
+    }
+  }
+
+  static EndpointPool of(ResolvedEndpoint endpoint) {
+    return new EndpointPool(List.of(endpoint), List.of(1));
+  }
+
+  public List<ResolvedEndpoint> endpoints() {
+    return endpoints;
+  }
+
+  public ResolvedEndpoint select(LoadBalancing strategy) {
+    if (endpoints.size() == 1) {
+      return endpoints.get(0);
+    }
+    return select(strategy, null);
+  }
+
+  /**
+   * Selects an endpoint with another target than the given one, for a call
+   * that must not land on the same endpoint. Returns null when the pool has
+   * no other target.
+   */
+  public ResolvedEndpoint selectOther(
+    ResolvedEndpoint primary,
+    LoadBalancing strategy
+  ) {
+    boolean hasOther = endpoints
+      .stream()
+      .anyMatch(endpoint -> !endpoint.target().equals(primary.target()));
+    return hasOther ? select(strategy, primary.target()) : null;
+  }
+
+  private ResolvedEndpoint select(LoadBalancing strategy, String excluded) {
+    LoadBalancing effective = strategy == null
+      ? LoadBalancing.WEIGHTED_ROUND_ROBIN
+      : strategy;
+    return switch (effective) {
+      case WEIGHTED_ROUND_ROBIN -> weightedRoundRobin(excluded);
+      case LEAST_OUTSTANDING -> leastOutstanding(excluded);
+      case LATENCY_EWMA -> lowestLatency(excluded);
+    };
+  }
+
+  private ResolvedEndpoint weightedRoundRobin(String excluded) {
+    int total = cumulativeWeights[cumulativeWeights.length - 1];
+    // Every other target holds at least one slot out of total.
+    for (int attempt = 0; attempt < total; attempt++) {
+      ResolvedEndpoint endpoint = endpointAtSlot(
+        (int) Math.floorMod(cursor.getAndIncrement(), (long) total)
+      );
+      if (!isExcluded(endpoint, excluded)) {
+        return endpoint;
+      }
+    }
+    return endpoints.get(0);
+  }
+
+  private ResolvedEndpoint endpointAtSlot(int slot) {
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (slot < cumulativeWeights[i]) {
+        return endpoints.get(i);
+      }
+    }
+    return endpoints.get(endpoints.size() - 1);
+  }
+
+  private static boolean isExcluded(ResolvedEndpoint endpoint, String target) {
+    return target != null && target.equals(endpoint.target());
+  }
+
+  private ResolvedEndpoint leastOutstanding(String excluded) {
+    // Scanning from a rotating start spreads ties instead of always favoring
+    // the first endpoint.
+    int size = endpoints.size();
+    int start = (int) Math.floorMod(cursor.getAndIncrement(), (long) size);
+    int best = start;
+    int bestInFlight = Integer.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      int index = (start + i) % size;
+      if (isExcluded(endpoints.get(index), excluded)) {
+        continue;
+      }
+      int inFlight = EndpointStats.of(endpoints.get(index)).inFlight();
+      if (inFlight < bestInFlight) {
+        best = index;
+        bestInFlight = inFlight;
+      }
+    }
+    return endpoints.get(best);
+  }
+
+  private ResolvedEndpoint lowestLatency(String excluded) {
+    int size = endpoints.size();
+    int start = (int) Math.floorMod(cursor.getAndIncrement(), (long) size);
+    int best = start;
+    double bestScore = Double.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      int index = (start + i) % size;
+      if (isExcluded(endpoints.get(index), excluded)) {
+        continue;
+      }
+      // Looked up on every selection: idle stats may have been evicted.
+      EndpointStats endpointStats = EndpointStats.of(endpoints.get(index));
+      double ewma = endpointStats.ewmaNanos();
+      if (ewma < 0 && endpointStats.inFlight() == 0) {
+        // An idle, unmeasured endpoint is probed so it gets a score.
+        return endpoints.get(index);
+      }
+      double score = ewma < 0
+        ? Double.MAX_VALUE / 2
+        : ewma * (endpointStats.inFlight() + 1);
+      if (score < bestScore) {
+        best = index;
+        bestScore = score;
+      }
+    }
+    return endpoints.get(best);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live call statistics of one LLM endpoint target, shared gateway-wide: the
+ * number of calls in flight and an exponentially weighted moving average of
+ * successful response times. Updates are lock-free.
+ *
+ * At most {@link #MAX_TARGETS} targets are tracked; past that, idle targets
+ * are evicted and start over from no measurement.
+ */
+public final class EndpointStats {
+
+  static final double EWMA_ALPHA = 0.3;
+  static final int MAX_TARGETS = 1024;
+
+  private static final ConcurrentMap<String, EndpointStats> STATS =
+    new ConcurrentHashMap<>();
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong ewmaNanosBits = new AtomicLong(
+    Double.doubleToRawLongBits(-1)
+  );
+
+  EndpointStats() {}
+
+  public static EndpointStats of(ResolvedEndpoint endpoint) {
+    EndpointStats stats = STATS.get(endpoint.target());
+    if (stats != null) {
+      return stats;
+    }
+    if (STATS.size() >= MAX_TARGETS) {
+      STATS.values().removeIf(idle -> idle.inFlight() == 0);
+    }
+    return STATS.computeIfAbsent(endpoint.target(), t -> new EndpointStats());
+  }
+
+  static int trackedTargets() {
+    return STATS.size();
+  }
+
+  void onStart() {
+    inFlight.incrementAndGet();
+  }
+
+  void onEnd() {
+    inFlight.decrementAndGet();
+  }
+
+  void recordLatency(long latencyNanos) {
+    ewmaNanosBits.getAndUpdate(bits -> {
+      double current = Double.longBitsToDouble(bits);
+      double next = current < 0
+        ? latencyNanos
+        : current + EWMA_ALPHA * (latencyNanos - current);
+      return Double.doubleToRawLongBits(next);
+    });
+  }
+
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Average response time in nanoseconds, or -1 before the first success.
+   */
+  public double ewmaNanos() {
+    return Double.longBitsToDouble(ewmaNanosBits.get());
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gateway-wide registry of JDK HTTP clients used to call LLM endpoints.
+ *
+ * One client is kept per target authority and shared by every policy
+ * instance, so APIs calling the same provider reuse its connections. All
+ * clients share one bounded executor instead of each creating its own.
+ */
+final class LlmHttpClients {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    LlmHttpClients.class
+  );
+
+  static final String HTTP2_ENV = "GRAVITEE_POLICY_AI_TRANSFORMER_HTTP2";
+  static final String CONNECT_TIMEOUT_MS_ENV =
+    "GRAVITEE_POLICY_AI_TRANSFORMER_CONNECT_TIMEOUT_MS";
+  static final String KEEP_ALIVE_S_ENV =
+    "GRAVITEE_POLICY_AI_TRANSFORMER_KEEP_ALIVE_S";
+  static final String MAX_CONNECTIONS_ENV =
+    "GRAVITEE_POLICY_AI_TRANSFORMER_MAX_CONNECTIONS";
+  static final String EXECUTOR_THREADS_ENV =
+    "GRAVITEE_POLICY_AI_TRANSFORMER_EXECUTOR_THREADS";
+
+  private static final long DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+  private static final int DEFAULT_EXECUTOR_THREADS = Math.max(
+    2,
+    Runtime.getRuntime().availableProcessors()
+  );
+
+  private static final LlmHttpClients SHARED = fromEnvironment();
+
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 50;
+
+  private final HttpClient.Version version;
+  private final Duration connectTimeout;
+  private final int maxConnectionsPerHost;
+  private final long keepAliveSeconds;
+  private final ExecutorService executor;
+
+  private final ConcurrentMap<String, HttpClient> clients =
+    new ConcurrentHashMap<>();
+
+  LlmHttpClients(boolean http2, long connectTimeoutMs, int executorThreads) {
+    this(
+      http2,
+      connectTimeoutMs,
+      executorThreads,
+      DEFAULT_MAX_CONNECTIONS_PER_HOST,
+      0
+    );
+  }
+
+  LlmHttpClients(
+    boolean http2,
+    long connectTimeoutMs,
+    int executorThreads,
+    int maxConnectionsPerHost,
+    long keepAliveSeconds
+  ) {
+    this.version = http2
+      ? HttpClient.Version.HTTP_2
+      : HttpClient.Version.HTTP_1_1;
+    this.connectTimeout = Duration.ofMillis(Math.max(connectTimeoutMs, 1));
+    this.maxConnectionsPerHost = maxConnectionsPerHost > 0
+      ? maxConnectionsPerHost
+      : DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    this.keepAliveSeconds = Math.max(keepAliveSeconds, 0);
+    int threads = Math.max(executorThreads, 1);
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(
+      threads,
+      threads,
+      60,
+      TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(),
+      daemonThreads()
+    );
+    pool.allowCoreThreadTimeOut(true);
+    this.executor = pool;
+  }
+
+  static LlmHttpClients shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the client for the scheme and authority of the given URI,
+   * creating it on first use.
+   */
+  HttpClient clientFor(URI uri) {
+    String authority = uri.getScheme() + "://" + uri.getRawAuthority();
+    return clients.computeIfAbsent(authority, key -> newClient());
+  }
+
+  boolean http2() {
+    return version == HttpClient.Version.HTTP_2;
+  }
+
+  Duration connectTimeout() {
+    return connectTimeout;
+  }
+
+  int maxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /**
+   * Idle keep-alive in seconds, 0 when left to the client default.
+   */
+  long keepAliveSeconds() {
+    return keepAliveSeconds;
+  }
+
+  int size() {
+    return clients.size();
+  }
+
+  private HttpClient newClient() {
+    return HttpClient.newBuilder()
+      .version(version)
+      .connectTimeout(connectTimeout)
+      .executor(executor)
+      .followRedirects(HttpClient.Redirect.NEVER)
+      .build();
+  }
+
+  private static ThreadFactory daemonThreads() {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(
+        runnable,
+        "ai-request-transformer-http-" + counter.incrementAndGet()
+      );
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static LlmHttpClients fromEnvironment() {
+    // The JDK client only takes pool settings from JVM-wide system
+    // properties, which the policy leaves alone: keep-alive and connection
+    // limits apply to the Vert.x client.
+    return new LlmHttpClients(
+      !"false".equalsIgnoreCase(env(HTTP2_ENV)),
+      envLong(CONNECT_TIMEOUT_MS_ENV, DEFAULT_CONNECT_TIMEOUT_MS),
+      (int) envLong(EXECUTOR_THREADS_ENV, DEFAULT_EXECUTOR_THREADS),
+      (int) envLong(MAX_CONNECTIONS_ENV, DEFAULT_MAX_CONNECTIONS_PER_HOST),
+      envLong(KEEP_ALIVE_S_ENV, 0)
+    );
+  }
+
+  private static String env(String name) {
+    String value = System.getenv(name);
+    return value == null || value.isBlank() ? null : value.trim();
+  }
+
+  private static long envLong(String name, long defaultValue) {
+    String value = env(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      LOGGER.warn("Ignoring invalid value [{}] for [{}].", value, name);
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.rxjava3.core.Single;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks up LLM Proxy API definitions from the management API when they are not
+ * deployed on the local gateway.
+ *
+ * The management API is a control-plane dependency, so lookups are guarded:
+ * concurrent lookups of the same id share one HTTP call, failed and not-found
+ * lookups are remembered for a negative-cache period, and a circuit breaker
+ * stops calling the management API after consecutive failures.
+ */
+class ManagementApiLookup {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+    ManagementApiLookup.class
+  );
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  static final String MAPI_URL_ENV = "GRAVITEE_POLICY_LLM_PROXY_MAPI_URL";
+  static final String MAPI_BASIC_AUTH_ENV =
+    "GRAVITEE_POLICY_LLM_PROXY_MAPI_BASIC_AUTH";
+  static final String MAPI_NEGATIVE_CACHE_TTL_MS_ENV =
+    "GRAVITEE_POLICY_LLM_PROXY_MAPI_NEGATIVE_CACHE_TTL_MS";
+  static final String MAPI_CIRCUIT_FAILURE_THRESHOLD_ENV =
+    "GRAVITEE_POLICY_LLM_PROXY_MAPI_CIRCUIT_FAILURE_THRESHOLD";
+  static final String MAPI_CIRCUIT_OPEN_MS_ENV =
+    "GRAVITEE_POLICY_LLM_PROXY_MAPI_CIRCUIT_OPEN_MS";
+
+  private static final String DEFAULT_MAPI_URL =
+    "http://management_api:8083/management";
+  private static final String DEFAULT_MAPI_BASIC_AUTH = "admin:admin";
+  private static final long DEFAULT_NEGATIVE_CACHE_TTL_MS = 30000;
+  private static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 5;
+  private static final long DEFAULT_CIRCUIT_OPEN_MS = 30000;
+
+  private static final ManagementApiLookup SHARED = fromEnvironment();
+
+  private final HttpClient httpClient = HttpClient.newBuilder()
+    .connectTimeout(Duration.ofSeconds(2))
+    .build();
+
+  private final String baseUrl;
+  private final String authorization;
+  private final long negativeCacheTtlNanos;
+  private final int circuitFailureThreshold;
+  private final long circuitOpenNanos;
+
+  private final ConcurrentMap<String, CompletableFuture<Lookup>> inFlight =
+    new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Long> negativeCache =
+    new ConcurrentHashMap<>();
+
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicBoolean probeInFlight = new AtomicBoolean();
+  private volatile long openUntilNanos;
+  private volatile boolean open;
+
+  ManagementApiLookup(
+    String baseUrl,
+    String basicAuth,
+    long negativeCacheTtlMs,
+    int circuitFailureThreshold,
+    long circuitOpenMs
+  ) {
+    this.baseUrl = baseUrl;
+    this.authorization =
+      "Basic " +
+      Base64.getEncoder().encodeToString(
+        basicAuth.getBytes(StandardCharsets.UTF_8)
+      );
+    this.negativeCacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(
+      Math.max(negativeCacheTtlMs, 0)
+    );
+    this.circuitFailureThreshold = Math.max(circuitFailureThreshold, 1);
+    this.circuitOpenNanos = TimeUnit.MILLISECONDS.toNanos(
+      Math.max(circuitOpenMs, 0)
+    );
+  }
+
+  /**
+   * Gateway-wide instance configured from environment variables, shared by all
+   * policy instances so the management API sees at most one call per id.
+   */
+  static ManagementApiLookup shared() {
+    return SHARED;
+  }
+
+  /**
+   * Looks up an API definition. Never errors: every outcome, including
+   * failures, is reported through {@link Lookup#outcome()}.
+   */
+  Single<Lookup> lookup(String apiId) {
+    return Single.defer(() -> {
+      long now = System.nanoTime();
+
+      Long negativeUntil = negativeCache.get(apiId);
+      if (negativeUntil != null) {
+        if (now - negativeUntil < 0) {
+          return Single.just(Lookup.of(Outcome.NEGATIVE_CACHE));
+        }
+        negativeCache.remove(apiId, negativeUntil);
+      }
+
+      CompletableFuture<Lookup> created = new CompletableFuture<>();
+      CompletableFuture<Lookup> existing = inFlight.putIfAbsent(
+        apiId,
+        created
+      );
+      if (existing != null) {
+        return toSingle(existing, Outcome.COALESCED);
+      }
+
+      if (!allowCall(now)) {
+        Lookup shortCircuited = Lookup.of(Outcome.CIRCUIT_OPEN);
+        inFlight.remove(apiId, created);
+        created.complete(shortCircuited);
+        return Single.just(shortCircuited);
+      }
+
+      CompletableFuture<Lookup> call;
+      try {
+        call = fetch(apiId);
+      } catch (Exception e) {
+        call = CompletableFuture.failedFuture(e);
+      }
+      call.whenComplete((lookup, throwable) -> {
+        Lookup result = throwable == null
+          ? lookup
+          : failure(apiId, throwable);
+        inFlight.remove(apiId, created);
+        created.complete(result);
+      });
+      return toSingle(created, null);
+    });
+  }
+
+  CircuitState circuitState() {
+    if (!open) {
+      return CircuitState.CLOSED;
+    }
+    return System.nanoTime() - openUntilNanos < 0
+      ? CircuitState.OPEN
+      : CircuitState.HALF_OPEN;
+  }
+
+  private boolean allowCall(long now) {
+    if (!open) {
+      return true;
+    }
+    if (now - openUntilNanos < 0) {
+      return false;
+    }
+    // Half-open: a single probe decides whether the circuit closes again.
+    return probeInFlight.compareAndSet(false, true);
+  }
+
+  private CompletableFuture<Lookup> fetch(String apiId) {
+    HttpRequest request = HttpRequest.newBuilder()
+      .uri(URI.create(baseUrl + "/v2/environments/DEFAULT/apis/" + apiId))
+      .timeout(Duration.ofSeconds(3))
+      .header("Authorization", authorization)
+      .GET()
+      .build();
+
+    return httpClient
+      .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+      .thenApply(response -> handleResponse(apiId, response));
+  }
+
+  private Lookup handleResponse(String apiId, HttpResponse<String> response) {
+    int status = response.statusCode();
+    if (status >= 200 && status < 300) {
+      try {
+        JsonNode apiNode = OBJECT_MAPPER.readTree(response.body());
+        recordSuccess();
+        return new Lookup(apiNode, Outcome.FETCHED);
+      } catch (Exception e) {
+        return failure(apiId, e);
+      }
+    }
+
+    LOGGER.debug(
+      "Unable to resolve llmProxyApiId [{}] from management API, status [{}].",
+      apiId,
+      status
+    );
+    rememberMiss(apiId);
+    if (status == 404) {
+      // The management API answered: the id simply does not exist.
+      recordSuccess();
+      return Lookup.of(Outcome.NOT_FOUND);
+    }
+    recordFailure();
+    return Lookup.of(Outcome.FAILED);
+  }
+
+  private Lookup failure(String apiId, Throwable throwable) {
+    LOGGER.debug(
+      "Unable to resolve llmProxyApiId [{}] from management API.",
+      apiId,
+      throwable
+    );
+    rememberMiss(apiId);
+    recordFailure();
+    return Lookup.of(Outcome.FAILED);
+  }
+
+  private void rememberMiss(String apiId) {
+    if (negativeCacheTtlNanos > 0) {
+      negativeCache.put(apiId, System.nanoTime() + negativeCacheTtlNanos);
+    }
+  }
+
+  private void recordSuccess() {
+    consecutiveFailures.set(0);
+    if (open) {
+      open = false;
+      LOGGER.info("Management API circuit closed.");
+    }
+    probeInFlight.set(false);
+  }
+
+  private void recordFailure() {
+    if (
+      open || consecutiveFailures.incrementAndGet() >= circuitFailureThreshold
+    ) {
+      openUntilNanos = System.nanoTime() + circuitOpenNanos;
+      if (!open) {
+        open = true;
+        LOGGER.warn(
+          "Management API circuit opened after {} consecutive failures.",
+          circuitFailureThreshold
+        );
+      }
+    }
+    probeInFlight.set(false);
+  }
+
+  private Single<Lookup> toSingle(
+    CompletableFuture<Lookup> future,
+    Outcome outcomeOverride
+  ) {
+    // Waiters only detach on dispose: the shared call keeps serving others.
+    return Single.create(emitter ->
+      future.whenComplete((lookup, throwable) -> {
+        Lookup result = throwable != null ? Lookup.of(Outcome.FAILED) : lookup;
+        emitter.onSuccess(
+          outcomeOverride == null
+            ? result
+            : new Lookup(result.api(), outcomeOverride)
+        );
+      })
+    );
+  }
+
+  private static ManagementApiLookup fromEnvironment() {
+    return new ManagementApiLookup(
+      env(MAPI_URL_ENV, DEFAULT_MAPI_URL),
+      env(MAPI_BASIC_AUTH_ENV, DEFAULT_MAPI_BASIC_AUTH),
+      envLong(MAPI_NEGATIVE_CACHE_TTL_MS_ENV, DEFAULT_NEGATIVE_CACHE_TTL_MS),
+      (int) envLong(
+        MAPI_CIRCUIT_FAILURE_THRESHOLD_ENV,
+        DEFAULT_CIRCUIT_FAILURE_THRESHOLD
+      ),
+      envLong(MAPI_CIRCUIT_OPEN_MS_ENV, DEFAULT_CIRCUIT_OPEN_MS)
+    );
+  }
+
+  private static String env(String name, String defaultValue) {
+    String value = System.getenv(name);
+    return value == null || value.isBlank() ? defaultValue : value;
+  }
+
+  private static long envLong(String name, long defaultValue) {
+    String value = System.getenv(name);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      LOGGER.warn("Ignoring invalid value [{}] for [{}].", value, name);
+      return defaultValue;
+    }
+  }
+
+  enum Outcome {
+    FETCHED,
+    COALESCED,
+    NOT_FOUND,
+    FAILED,
+    NEGATIVE_CACHE,
+    CIRCUIT_OPEN,
+  }
+
+  enum CircuitState {
+    CLOSED,
+    OPEN,
+    HALF_OPEN,
+  }
+
+  record Lookup(JsonNode api, Outcome outcome) {
+    static Lookup of(Outcome outcome) {
+      return new Lookup(null, outcome);
+    }
+  }
+}
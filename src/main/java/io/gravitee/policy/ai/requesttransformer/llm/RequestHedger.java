@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeEmitter;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.CompositeDisposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends a backup call when the primary one is slower than usual.
+ *
+ * The hedge delay is either fixed or the configured percentile of recently
+ * observed latencies. The first success wins and the other call is
+ * cancelled; a call that fails keeps waiting for the other one. Hedges are
+ * paid from a token budget refilled by each primary call, which caps the
+ * share of hedged calls at maxHedgeRatio.
+ */
+public final class RequestHedger {
+
+  static final int WINDOW_SIZE = 256;
+  static final int MIN_SAMPLES = 20;
+
+  private static final int RECOMPUTE_EVERY = 16;
+  private static final long TOKEN_SCALE = 1000;
+  private static final long MAX_TOKENS = 10 * TOKEN_SCALE;
+
+  private final long fixedDelayMs;
+  private final double percentile;
+  private final long tokensPerCall;
+  private final Scheduler scheduler;
+
+  private final AtomicLongArray latenciesMs = new AtomicLongArray(WINDOW_SIZE);
+  private final AtomicInteger samples = new AtomicInteger();
+  private final AtomicLong tokens = new AtomicLong();
+  private final AtomicLong hedges = new AtomicLong();
+  private volatile long percentileDelayMs = -1;
+
+  public RequestHedger(
+    long fixedDelayMs,
+    int percentile,
+    double maxHedgeRatio
+  ) {
+    this(fixedDelayMs, percentile, maxHedgeRatio, Schedulers.computation());
+  }
+
+  RequestHedger(
+    long fixedDelayMs,
+    int percentile,
+    double maxHedgeRatio,
+    Scheduler scheduler
+  ) {
+    this.fixedDelayMs = Math.max(fixedDelayMs, 0);
+    this.percentile = Math.min(Math.max(percentile, 1), 99) / 100.0;
+    this.tokensPerCall = Math.round(
+      Math.min(Math.max(maxHedgeRatio, 0), 1) * TOKEN_SCALE
+    );
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Subscribes to {@code primary} and, if it has not terminated after the
+   * hedge delay and the budget allows it, to {@code backup} as well.
+   */
+  public <T> Maybe<T> hedge(Maybe<T> primary, Maybe<T> backup) {
+    return Maybe.defer(() -> {
+      refill();
+      long delayMs = delayMs();
+      Maybe<T> timedPrimary = timed(primary);
+      if (delayMs < 0) {
+        return timedPrimary;
+      }
+
+      return Maybe.create(emitter -> {
+        Race<T> race = new Race<>(emitter);
+        emitter.setDisposable(race.calls);
+        race.start(timedPrimary);
+        race.calls.add(
+          Maybe.timer(delayMs, TimeUnit.MILLISECONDS, scheduler).subscribe(
+            ignored -> {
+              if (!race.isDone() && tryAcquire()) {
+                race.start(timed(backup));
+              }
+            }
+          )
+        );
+      });
+    });
+  }
+
+  /**
+   * Current hedge delay in milliseconds, or -1 while there are not enough
+   * latency samples to derive it from the percentile.
+   */
+  long delayMs() {
+    return fixedDelayMs > 0 ? fixedDelayMs : percentileDelayMs;
+  }
+
+  long hedgeCount() {
+    return hedges.get();
+  }
+
+  private <T> Maybe<T> timed(Maybe<T> call) {
+    return Maybe.defer(() -> {
+      long start = System.nanoTime();
+      return call.doOnSuccess(value ->
+        record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+      );
+    });
+  }
+
+  private void record(long latencyMs) {
+    int sample = samples.getAndIncrement();
+    latenciesMs.set(Math.floorMod(sample, WINDOW_SIZE), latencyMs);
+    int count = sample + 1;
+    if (
+      count >= MIN_SAMPLES &&
+      (count == MIN_SAMPLES || count % RECOMPUTE_EVERY == 0)
+    ) {
+      percentileDelayMs = computePercentile(Math.min(count, WINDOW_SIZE));
+    }
+  }
+
+  private long computePercentile(int count) {
+    long[] window = new long[count];
+    for (int i = 0; i < count; i++) {
+      window[i] = latenciesMs.get(i);
+    }
+    Arrays.sort(window);
+    int index = (int) Math.ceil(percentile * count) - 1;
+    return Math.max(window[Math.max(index, 0)], 1);
+  }
+
+  private void refill() {
+    tokens.getAndUpdate(current ->
+      Math.min(current + tokensPerCall, MAX_TOKENS)
+    );
+  }
+
+  /**
+   * Outcome of a hedged call: the first success wins and cancels the other
+   * call, and a failure only ends the race once no call is left running. The
+   * first failure is the one reported; an empty completion counts as a
+   * failure without error.
+   */
+  private static final class Race<T> {
+
+    private final MaybeEmitter<T> emitter;
+    private final CompositeDisposable calls = new CompositeDisposable();
+    private int running;
+    private boolean done;
+    private Throwable firstError;
+
+    Race(MaybeEmitter<T> emitter) {
+      this.emitter = emitter;
+    }
+
+    void start(Maybe<T> call) {
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        running++;
+      }
+      calls.add(
+        call.subscribe(this::onSuccess, this::onFailure, () -> onFailure(null))
+      );
+    }
+
+    synchronized boolean isDone() {
+      return done;
+    }
+
+    private void onSuccess(T value) {
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        done = true;
+      }
+      calls.dispose();
+      emitter.onSuccess(value);
+    }
+
+    private void onFailure(Throwable error) {
+      Throwable reported;
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        if (firstError == null) {
+          firstError = error;
+        }
+        if (--running > 0) {
+          return;
+        }
+        done = true;
+        reported = firstError;
+      }
+      calls.dispose();
+      if (reported == null) {
+        emitter.onComplete();
+      } else {
+        emitter.tryOnError(reported);
+      }
+    }
+  }
+
+  private boolean tryAcquire() {
+    long current;
+    do {
+      current = tokens.get();
+      if (current < TOKEN_SCALE) {
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - TOKEN_SCALE));
+    hedges.incrementAndGet();
+    return true;
+  }
+}
@@ -15,9 +15,64 @@
  */
 package io.gravitee.policy.ai.requesttransformer.llm;
 
+import java.util.Objects;
+
+/**
+ * An LLM endpoint and the credentials and model to call it with.
+ *
+ * An endpoint selected from an llm-proxy endpoint group keeps a reference to
+ * its pool, so a backup call can be sent to another endpoint of the same
+ * group. The pool is not part of the endpoint identity: equality and hash
+ * code only cover the call settings.
+ */
 public record ResolvedEndpoint(
   String target,
   String authHeader,
   String authValue,
-  String model
-) {}
+  String model,
+  EndpointPool pool
+) {
+  public ResolvedEndpoint(
+    String target,
+    String authHeader,
+    String authValue,
+    String model
+  ) {
+    this(target, authHeader, authValue, model, null);
+  }
+
+  ResolvedEndpoint inPool(EndpointPool pool) {
+    return new ResolvedEndpoint(target, authHeader, authValue, model, pool);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return (
+      other instanceof ResolvedEndpoint endpoint &&
+      Objects.equals(target, endpoint.target) &&
+      Objects.equals(authHeader, endpoint.authHeader) &&
+      Objects.equals(authValue, endpoint.authValue) &&
+      Objects.equals(model, endpoint.model)
+    );
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(target, authHeader, authValue, model);
+  }
+
+  @Override
+  public String toString() {
+    return (
+      "ResolvedEndpoint[target=" +
+      target +
+      ", authHeader=" +
+      authHeader +
+      ", authValue=" +
+      authValue +
+      ", model=" +
+      model +
+      "]"
+    );
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.vertx.core.http.HttpClosedException;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries LLM calls to one endpoint that failed transiently: a 429, 502 or
+ * 503 status, or a connection error.
+ *
+ * The delay before a retry is the Retry-After of the response when present,
+ * otherwise a full-jitter exponential backoff. Every attempt shares the
+ * caller deadline: a retry whose delay would reach it is not made. Retries
+ * are paid from a budget refilled by each call, which caps them at
+ * maxRetryRatio of the calls so that an outage does not turn into a retry
+ * storm.
+ */
+public final class RetryPolicy {
+
+  private static final long TOKEN_SCALE = 1000;
+  private static final long MAX_TOKENS = 10 * TOKEN_SCALE;
+
+  private final int maxAttempts;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+  private final long tokensPerCall;
+  private final Scheduler scheduler;
+
+  // Starts full, so a short blip on a fresh endpoint can still be retried.
+  private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+  private final AtomicLong retries = new AtomicLong();
+
+  public RetryPolicy(
+    int maxAttempts,
+    long initialBackoffMs,
+    long maxBackoffMs,
+    double maxRetryRatio
+  ) {
+    this(
+      maxAttempts,
+      initialBackoffMs,
+      maxBackoffMs,
+      maxRetryRatio,
+      Schedulers.computation()
+    );
+  }
+
+  RetryPolicy(
+    int maxAttempts,
+    long initialBackoffMs,
+    long maxBackoffMs,
+    double maxRetryRatio,
+    Scheduler scheduler
+  ) {
+    this.maxAttempts = Math.max(maxAttempts, 1);
+    this.initialBackoffMs = Math.max(initialBackoffMs, 1);
+    this.maxBackoffMs = Math.max(maxBackoffMs, this.initialBackoffMs);
+    this.tokensPerCall = Math.round(
+      Math.min(Math.max(maxRetryRatio, 0), 1) * TOKEN_SCALE
+    );
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Subscribes to {@code call} again after a retryable failure, as long as
+   * attempts, budget and the deadline, timeoutMs from now (0 = none), allow
+   * it. The last failure is signalled otherwise.
+   */
+  public <T> Maybe<T> retry(Maybe<T> call, long timeoutMs) {
+    return Maybe.defer(() -> {
+      refill();
+      long deadline = timeoutMs > 0
+        ? now() + TimeUnit.MILLISECONDS.toNanos(timeoutMs)
+        : Long.MAX_VALUE;
+      AtomicInteger attempts = new AtomicInteger(1);
+      return call.retryWhen(errors ->
+        errors.concatMap(error -> {
+          long delayMs = delayBeforeRetry(error, attempts.get(), deadline);
+          if (delayMs < 0) {
+            return Flowable.error(error);
+          }
+          attempts.incrementAndGet();
+          retries.incrementAndGet();
+          return Flowable.timer(delayMs, TimeUnit.MILLISECONDS, scheduler);
+        })
+      );
+    });
+  }
+
+  long retryCount() {
+    return retries.get();
+  }
+
+  /**
+   * Whether the failure is worth another attempt on the same endpoint.
+   */
+  static boolean isRetryable(Throwable throwable) {
+    if (throwable instanceof TransformerLlmClient.LlmStatusException e) {
+      int status = e.statusCode();
+      return status == 429 || status == 502 || status == 503;
+    }
+    // A timed-out attempt has used up the deadline already.
+    return (
+      (throwable instanceof IOException &&
+        !(throwable instanceof HttpTimeoutException)) ||
+      throwable instanceof HttpClosedException
+    );
+  }
+
+  /**
+   * Parses a Retry-After header, given in seconds or as an HTTP date, into
+   * milliseconds. Returns -1 when absent or invalid.
+   */
+  static long retryAfterMs(String header) {
+    if (header == null || header.isBlank()) {
+      return -1;
+    }
+    String value = header.trim();
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(Long.parseLong(value), 0));
+    } catch (NumberFormatException ignored) {
+      // Not delta-seconds: try an HTTP date.
+    }
+    try {
+      ZonedDateTime date = ZonedDateTime.parse(
+        value,
+        DateTimeFormatter.RFC_1123_DATE_TIME
+      );
+      return Math.max(
+        Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis(),
+        0
+      );
+    } catch (RuntimeException e) {
+      return -1;
+    }
+  }
+
+  private long delayBeforeRetry(Throwable error, int attempts, long deadline) {
+    if (attempts >= maxAttempts || !isRetryable(error)) {
+      return -1;
+    }
+
+    long delayMs =
+      error instanceof TransformerLlmClient.LlmStatusException e &&
+        e.retryAfterMs() >= 0
+        ? e.retryAfterMs()
+        : backoffMs(attempts);
+    if (deadline - now() - TimeUnit.MILLISECONDS.toNanos(delayMs) <= 0) {
+      return -1;
+    }
+    return tryAcquire() ? delayMs : -1;
+  }
+
+  private long backoffMs(int attempts) {
+    long ceiling = Math.min(
+      initialBackoffMs << Math.min(attempts - 1, 20),
+      maxBackoffMs
+    );
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  private long now() {
+    return scheduler.now(TimeUnit.NANOSECONDS);
+  }
+
+  private void refill() {
+    tokens.getAndUpdate(current ->
+      Math.min(current + tokensPerCall, MAX_TOKENS)
+    );
+  }
+
+  private boolean tryAcquire() {
+    long current;
+    do {
+      current = tokens.get();
+      if (current < TOKEN_SCALE) {
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - TOKEN_SCALE));
+    return true;
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket mirroring a provider tokens-per-minute quota for one endpoint
+ * and model.
+ *
+ * The bucket holds up to one minute of tokens and refills continuously.
+ * Each call is charged an estimate up front, derived from the system prompt
+ * and user content lengths, and the charge is settled once the provider
+ * reports the tokens it actually counted. The balance may go negative when
+ * calls turn out larger than estimated; later calls then wait for the
+ * refill. A call larger than the whole bucket is let through once the
+ * bucket is full, so it is delayed instead of rejected forever.
+ *
+ * Budgets obtained through {@link #shared} are gateway-wide: every policy
+ * instance calling the same target and model draws from one bucket, as the
+ * provider quota does.
+ */
+public final class TokenBudget {
+
+  private static final ConcurrentMap<Key, TokenBudget> SHARED =
+    new ConcurrentHashMap<>();
+
+  private final String name;
+  private final LongSupplier nanoTime;
+
+  private long tokensPerMinute;
+  private volatile int charsPerToken;
+  private double tokensPerNano;
+
+  private double available;
+  private long refilledAt;
+
+  public TokenBudget(String name, long tokensPerMinute, int charsPerToken) {
+    this(name, tokensPerMinute, charsPerToken, System::nanoTime);
+  }
+
+  TokenBudget(
+    String name,
+    long tokensPerMinute,
+    int charsPerToken,
+    LongSupplier nanoTime
+  ) {
+    this.name = name;
+    this.nanoTime = nanoTime;
+    this.refilledAt = nanoTime.getAsLong();
+    limits(tokensPerMinute, charsPerToken);
+    this.available = this.tokensPerMinute;
+  }
+
+  /**
+   * Returns the gateway-wide budget of an endpoint target and model,
+   * creating it on first use. When another policy configures different
+   * limits for the same target and model, the bucket keeps its balance and
+   * adopts the latest limits.
+   */
+  public static TokenBudget shared(
+    String target,
+    String model,
+    long tokensPerMinute,
+    int charsPerToken
+  ) {
+    TokenBudget budget = SHARED.computeIfAbsent(new Key(target, model), key ->
+      new TokenBudget(
+        model == null ? target : target + " (" + model + ")",
+        tokensPerMinute,
+        charsPerToken
+      )
+    );
+    budget.limits(tokensPerMinute, charsPerToken);
+    return budget;
+  }
+
+  private synchronized void limits(long tokensPerMinute, int charsPerToken) {
+    refill();
+    this.tokensPerMinute = Math.max(tokensPerMinute, 1);
+    this.charsPerToken = Math.max(charsPerToken, 1);
+    this.tokensPerNano =
+      (double) this.tokensPerMinute / TimeUnit.MINUTES.toNanos(1);
+    available = Math.min(available, this.tokensPerMinute);
+  }
+
+  /**
+   * Estimated tokens of a call: its input, plus as much output since a
+   * transformation usually returns content of the same size.
+   */
+  public long estimate(String systemPrompt, String userContent) {
+    long promptChars = systemPrompt == null ? 0 : systemPrompt.length();
+    long inputChars = userContent == null ? 0 : userContent.length();
+    return Math.max(
+      (promptChars + 2 * inputChars + charsPerToken - 1) / charsPerToken,
+      1
+    );
+  }
+
+  public synchronized boolean tryCharge(long tokens) {
+    refill();
+    if (available >= tokens || available >= tokensPerMinute) {
+      available -= tokens;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Replaces an estimated charge by the tokens the provider reported.
+   */
+  public synchronized void settle(long charged, long actual) {
+    refill();
+    available = Math.min(available + charged - actual, tokensPerMinute);
+  }
+
+  public void refund(long charged) {
+    settle(charged, 0);
+  }
+
+  public synchronized long available() {
+    refill();
+    return (long) available;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  private void refill() {
+    long now = nanoTime.getAsLong();
+    long elapsed = now - refilledAt;
+    if (elapsed > 0) {
+      available = Math.min(
+        available + elapsed * tokensPerNano,
+        tokensPerMinute
+      );
+      refilledAt = now;
+    }
+  }
+
+  private record Key(String target, String model) {}
+
+  /**
+   * Signals a call rejected because its estimated tokens exceed the budget
+   * left.
+   */
+  public static final class BudgetExceededException extends RuntimeException {
+
+    public BudgetExceededException(TokenBudget budget) {
+      super("token budget exhausted for LLM endpoint " + budget.name());
+    }
+  }
+}
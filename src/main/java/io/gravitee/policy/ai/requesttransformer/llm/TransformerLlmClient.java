@@ -15,16 +15,33 @@
  */
 package io.gravitee.policy.ai.requesttransformer.llm;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.rxjava3.core.Maybe;
+import io.vertx.core.Vertx;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
 
 /**
  * OpenAI-compatible LLM HTTP client used by transformer policies.
@@ -33,34 +50,566 @@ public class TransformerLlmClient {
 
   public static final String CHAT_COMPLETIONS_PATH = "/chat/completions";
 
+  static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
+  static final String RETRY_AFTER_HEADER = "Retry-After";
+
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-  private final HttpClient httpClient;
+  private static final int MAX_REQUEST_TEMPLATES = 256;
+
+  private final Function<URI, HttpClient> httpClients;
+  private final ConcurrentMap<InFlightKey, Maybe<String>> inFlight =
+    new ConcurrentHashMap<>();
+  private final ConcurrentMap<
+    TemplateKey,
+    ChatCompletionTemplate
+  > requestTemplates = new ConcurrentHashMap<>();
+  private final ConcurrentMap<
+    ResolvedEndpoint,
+    EndpointCircuitBreaker
+  > circuitBreakers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<
+    ResolvedEndpoint,
+    ConcurrencyLimiter
+  > concurrencyLimiters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<BudgetKey, TokenBudget> tokenBudgets =
+    new ConcurrentHashMap<>();
+  private final ConcurrentMap<ResolvedEndpoint, RetryPolicy> retryPolicies =
+    new ConcurrentHashMap<>();
+  private volatile SystemMessage systemMessage;
+  private volatile VertxLlmTransport vertxTransport;
+  private volatile RequestHedger hedger;
+  private volatile UnaryOperator<ResolvedEndpoint> backupSelector;
+  private volatile Function<
+    ResolvedEndpoint,
+    EndpointCircuitBreaker
+  > circuitBreakerFactory;
+  private volatile Function<
+    ResolvedEndpoint,
+    ConcurrencyLimiter
+  > concurrencyLimiterFactory;
+  private volatile Function<ResolvedEndpoint, TokenBudget> tokenBudgetFactory;
+  private volatile Function<ResolvedEndpoint, RetryPolicy> retryPolicyFactory;
 
+  /**
+   * Uses the gateway-wide HTTP clients shared by all policy instances.
+   */
   public TransformerLlmClient() {
-    this(HttpClient.newBuilder().build());
+    this(LlmHttpClients.shared()::clientFor);
   }
 
   public TransformerLlmClient(HttpClient httpClient) {
-    this.httpClient = httpClient;
+    this(uri -> httpClient);
+  }
+
+  TransformerLlmClient(Function<URI, HttpClient> httpClients) {
+    this.httpClients = httpClients;
+  }
+
+  /**
+   * Switches this client to the Vert.x HTTP client of the given instance, so
+   * LLM calls run on the gateway event loops instead of the JDK client
+   * threads. Calls made before, or without, a Vert.x instance use the JDK
+   * client.
+   */
+  public void useVertx(Vertx vertx) {
+    if (vertx != null && vertxTransport == null) {
+      vertxTransport = VertxLlmTransport.shared(vertx);
+    }
+  }
+
+  /**
+   * Enables hedged calls: a slow call gets a backup request and the first
+   * success wins. Pass null to disable hedging.
+   */
+  public void setHedger(RequestHedger hedger) {
+    this.hedger = hedger;
+  }
+
+  /**
+   * Picks the endpoint a hedged call sends its backup to, given the primary
+   * one. The backup goes to the primary endpoint when the selector is null
+   * or returns null.
+   */
+  public void setBackupSelector(UnaryOperator<ResolvedEndpoint> selector) {
+    this.backupSelector = selector;
+  }
+
+  /**
+   * Guards every endpoint with its own circuit breaker, created by the
+   * factory on first use. Calls to an endpoint whose circuit is open fail
+   * with {@link EndpointCircuitBreaker.CircuitOpenException} without
+   * attempting the call. Pass null to disable circuit breaking.
+   */
+  public void setCircuitBreakers(
+    Function<ResolvedEndpoint, EndpointCircuitBreaker> factory
+  ) {
+    this.circuitBreakerFactory = factory;
+    circuitBreakers.clear();
+  }
+
+  /**
+   * Returns the circuit breaker of an endpoint, or null when circuit breaking
+   * is disabled.
+   */
+  public EndpointCircuitBreaker circuitBreaker(ResolvedEndpoint endpoint) {
+    Function<ResolvedEndpoint, EndpointCircuitBreaker> factory =
+      circuitBreakerFactory;
+    if (factory == null || endpoint == null) {
+      return null;
+    }
+    return circuitBreakers.computeIfAbsent(endpoint, factory);
+  }
+
+  /**
+   * Caps the concurrent calls to every endpoint with its own adaptive
+   * limiter, created by the factory on first use. Calls that cannot start
+   * before their deadline fail with
+   * {@link ConcurrencyLimiter.LimitExceededException}. Pass null to disable
+   * concurrency limiting.
+   */
+  public void setConcurrencyLimiters(
+    Function<ResolvedEndpoint, ConcurrencyLimiter> factory
+  ) {
+    this.concurrencyLimiterFactory = factory;
+    concurrencyLimiters.clear();
   }
 
-  public String transform(
+  /**
+   * Returns the concurrency limiter of an endpoint, or null when concurrency
+   * limiting is disabled.
+   */
+  public ConcurrencyLimiter concurrencyLimiter(ResolvedEndpoint endpoint) {
+    Function<ResolvedEndpoint, ConcurrencyLimiter> factory =
+      concurrencyLimiterFactory;
+    if (factory == null || endpoint == null) {
+      return null;
+    }
+    return concurrencyLimiters.computeIfAbsent(endpoint, factory);
+  }
+
+  /**
+   * Charges every call to a token budget per endpoint target and model,
+   * created by the factory on first use. Calls over budget fail with
+   * {@link TokenBudget.BudgetExceededException} before any network I/O.
+   * Pass null to disable token budgeting.
+   */
+  public void setTokenBudgets(Function<ResolvedEndpoint, TokenBudget> factory) {
+    this.tokenBudgetFactory = factory;
+    tokenBudgets.clear();
+  }
+
+  /**
+   * Returns the token budget of an endpoint and its model, or null when
+   * token budgeting is disabled.
+   */
+  public TokenBudget tokenBudget(ResolvedEndpoint endpoint) {
+    Function<ResolvedEndpoint, TokenBudget> factory = tokenBudgetFactory;
+    if (factory == null || endpoint == null) {
+      return null;
+    }
+    return tokenBudgets.computeIfAbsent(
+      new BudgetKey(endpoint.target(), endpoint.model()),
+      key -> factory.apply(endpoint)
+    );
+  }
+
+  /**
+   * Retries transient failures with the retry policy of each endpoint,
+   * created by the factory on first use. Pass null to disable retries.
+   */
+  public void setRetryPolicies(Function<ResolvedEndpoint, RetryPolicy> factory) {
+    this.retryPolicyFactory = factory;
+    retryPolicies.clear();
+  }
+
+  /**
+   * Returns the retry policy of an endpoint, or null when retries are
+   * disabled.
+   */
+  public RetryPolicy retryPolicy(ResolvedEndpoint endpoint) {
+    Function<ResolvedEndpoint, RetryPolicy> factory = retryPolicyFactory;
+    if (factory == null || endpoint == null) {
+      return null;
+    }
+    return retryPolicies.computeIfAbsent(endpoint, factory);
+  }
+
+  boolean usesVertx() {
+    return vertxTransport != null;
+  }
+
+  public Maybe<String> transform(
     ResolvedEndpoint endpoint,
     String systemPrompt,
     String userContent,
     int timeoutMs
-  ) throws Exception {
+  ) {
     return transform(endpoint, systemPrompt, userContent, timeoutMs, false);
   }
 
-  public String transform(
+  /**
+   * Calls the chat completion endpoint without blocking the subscribing thread.
+   * Completes empty when the LLM response carries no assistant content, and
+   * aborts the underlying HTTP exchange when the subscriber is disposed.
+   *
+   * Identical calls that are in flight at the same time share one HTTP
+   * exchange. A waiter that goes away only detaches itself; the exchange is
+   * aborted once the last waiter is disposed.
+   */
+  public Maybe<String> transform(
     ResolvedEndpoint endpoint,
     String systemPrompt,
     String userContent,
     int timeoutMs,
     boolean useOpenAiJsonResponseFormat
-  ) throws Exception {
+  ) {
+    return shared(
+      endpoint,
+      systemPrompt,
+      userContent,
+      timeoutMs,
+      useOpenAiJsonResponseFormat,
+      false,
+      0
+    );
+  }
+
+  /**
+   * Streaming variant of {@link #transform}: requests server-sent events and
+   * accumulates content deltas as they arrive. The exchange is aborted with
+   * {@link LlmResponseTooLargeException} as soon as the accumulated content
+   * exceeds {@code maxContentBytes} (0 = unlimited), and with a timeout once
+   * {@code timeoutMs} elapsed, whether or not headers were received.
+   */
+  public Maybe<String> transformStreaming(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    String userContent,
+    int timeoutMs,
+    boolean useOpenAiJsonResponseFormat,
+    int maxContentBytes
+  ) {
+    return shared(
+      endpoint,
+      systemPrompt,
+      userContent,
+      timeoutMs,
+      useOpenAiJsonResponseFormat,
+      true,
+      maxContentBytes
+    );
+  }
+
+  private Maybe<String> shared(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    String userContent,
+    int timeoutMs,
+    boolean useOpenAiJsonResponseFormat,
+    boolean stream,
+    int maxContentBytes
+  ) {
+    return Maybe.defer(() -> {
+      long deadlineNanos =
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      // Every attempt, retries and backups included, is charged to the
+      // budget of the endpoint it is sent to and settled on its own usage.
+      Function<ResolvedEndpoint, Maybe<String>> attempt = target ->
+        Maybe.defer(() -> {
+          AtomicLong reportedTokens = new AtomicLong(-1);
+          return budgeted(
+            target,
+            systemPrompt,
+            userContent,
+            reportedTokens,
+            guarded(
+              target,
+              limited(
+                target,
+                exchange(
+                  target,
+                  systemPrompt,
+                  userContent,
+                  useOpenAiJsonResponseFormat,
+                  stream,
+                  maxContentBytes,
+                  deadlineNanos,
+                  timeoutMs,
+                  reportedTokens
+                ),
+                deadlineNanos,
+                timeoutMs
+              )
+            )
+          );
+        });
+      // The backup is a separate attempt with its own breaker and limiter
+      // permit: it must not be coalesced with the primary, so hedging
+      // happens inside the shared call.
+      RequestHedger currentHedger = hedger;
+      Maybe<String> call = retried(
+        endpoint,
+        currentHedger == null
+          ? attempt.apply(endpoint)
+          : currentHedger.hedge(
+            attempt.apply(endpoint),
+            Maybe.defer(() -> attempt.apply(backupFor(endpoint)))
+          ),
+        timeoutMs
+      );
+      if (endpoint == null) {
+        return call;
+      }
+
+      InFlightKey key = new InFlightKey(
+        endpoint,
+        systemPrompt,
+        userContent,
+        useOpenAiJsonResponseFormat,
+        stream,
+        maxContentBytes
+      );
+      return inFlight.computeIfAbsent(key, k -> share(k, call));
+    });
+  }
+
+  /**
+   * Feeds the in-flight count and response-time average used by endpoint
+   * load balancing.
+   */
+  private static Maybe<String> tracked(
+    ResolvedEndpoint endpoint,
+    Maybe<String> call
+  ) {
+    EndpointStats stats = EndpointStats.of(endpoint);
+    long start = System.nanoTime();
+    stats.onStart();
+    return call
+      .doOnEvent((content, throwable) -> {
+        if (throwable == null) {
+          stats.recordLatency(System.nanoTime() - start);
+        }
+      })
+      .doFinally(stats::onEnd);
+  }
+
+  /**
+   * Charges the estimated tokens of an attempt to the endpoint token budget
+   * before it is sent, and settles the charge against the usage reported by
+   * the provider. Attempts shed before being sent are refunded; a failed
+   * attempt keeps its estimate, as the provider may have counted it.
+   * Streamed calls report no usage and keep their estimate too.
+   */
+  private Maybe<String> budgeted(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    String userContent,
+    AtomicLong reportedTokens,
+    Maybe<String> call
+  ) {
+    TokenBudget budget = tokenBudget(endpoint);
+    if (budget == null) {
+      return call;
+    }
+
+    return Maybe.defer(() -> {
+      long estimate = budget.estimate(systemPrompt, userContent);
+      if (!budget.tryCharge(estimate)) {
+        return Maybe.error(new TokenBudget.BudgetExceededException(budget));
+      }
+
+      return call.doOnEvent((content, throwable) -> {
+        if (
+          throwable instanceof EndpointCircuitBreaker.CircuitOpenException ||
+          throwable instanceof ConcurrencyLimiter.LimitExceededException
+        ) {
+          budget.refund(estimate);
+        } else if (throwable == null && reportedTokens.get() >= 0) {
+          budget.settle(estimate, reportedTokens.get());
+        }
+      });
+    });
+  }
+
+  private Maybe<String> exchange(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    String userContent,
+    boolean useOpenAiJsonResponseFormat,
+    boolean stream,
+    int maxContentBytes,
+    long deadlineNanos,
+    int timeoutMs,
+    AtomicLong reportedTokens
+  ) {
+    return Maybe.defer(() -> {
+      int remainingMs = remainingMs(deadlineNanos, timeoutMs);
+      ChatCompletionTemplate template = requestTemplate(
+        endpoint,
+        systemPrompt,
+        useOpenAiJsonResponseFormat,
+        stream
+      );
+      VertxLlmTransport vertx = vertxTransport;
+      if (vertx != null) {
+        return tracked(
+          endpoint,
+          stream
+            ? vertx.stream(template, userContent, remainingMs, maxContentBytes)
+            : vertx.send(
+              template,
+              userContent,
+              remainingMs,
+              reportedTokens::set
+            )
+        );
+      }
+
+      HttpRequest request = template.request(userContent, remainingMs);
+      return tracked(
+        endpoint,
+        stream
+          ? stream(request, remainingMs, maxContentBytes)
+          : send(request, reportedTokens::set)
+      );
+    });
+  }
+
+  private ResolvedEndpoint backupFor(ResolvedEndpoint primary) {
+    UnaryOperator<ResolvedEndpoint> selector = backupSelector;
+    ResolvedEndpoint backup = selector == null ? null : selector.apply(primary);
+    return backup == null ? primary : backup;
+  }
+
+  /**
+   * Time left before the call deadline: time spent queued by the concurrency
+   * limiter or waiting for a hedge comes out of the same timeoutMs budget.
+   */
+  private static int remainingMs(long deadlineNanos, int timeoutMs) {
+    if (timeoutMs <= 0) {
+      return timeoutMs;
+    }
+    long remaining = TimeUnit.NANOSECONDS.toMillis(
+      deadlineNanos - System.nanoTime()
+    );
+    return (int) Math.max(remaining, 1);
+  }
+
+  /**
+   * Retries transient failures of the call within its timeoutMs budget. Each
+   * attempt goes through the circuit breaker and the concurrency limiter
+   * again.
+   */
+  private Maybe<String> retried(
+    ResolvedEndpoint endpoint,
+    Maybe<String> call,
+    int timeoutMs
+  ) {
+    RetryPolicy retryPolicy = retryPolicy(endpoint);
+    return retryPolicy == null ? call : retryPolicy.retry(call, timeoutMs);
+  }
+
+  /**
+   * Passes the call through the endpoint concurrency limiter, which may shed
+   * it before it is sent. Every attempt queues with the time left before the
+   * call deadline.
+   */
+  private Maybe<String> limited(
+    ResolvedEndpoint endpoint,
+    Maybe<String> call,
+    long deadlineNanos,
+    int timeoutMs
+  ) {
+    ConcurrencyLimiter limiter = concurrencyLimiter(endpoint);
+    if (limiter == null) {
+      return call;
+    }
+    return Maybe.defer(() ->
+      limiter.limit(call, remainingMs(deadlineNanos, timeoutMs))
+    );
+  }
+
+  /**
+   * Passes the call through the endpoint circuit breaker. A hedge loser that
+   * gets cancelled does not count. Only timeouts, connection errors, 429 and
+   * 5xx answers count as failures: a 4xx or an oversized response is about
+   * the request, not the endpoint health.
+   */
+  private Maybe<String> guarded(ResolvedEndpoint endpoint, Maybe<String> call) {
+    EndpointCircuitBreaker breaker = circuitBreaker(endpoint);
+    if (breaker == null) {
+      return call;
+    }
+
+    return Maybe.defer(() -> {
+      if (!breaker.tryAcquire()) {
+        return Maybe.error(
+          new EndpointCircuitBreaker.CircuitOpenException(endpoint.target())
+        );
+      }
+
+      long start = System.nanoTime();
+      AtomicBoolean recorded = new AtomicBoolean();
+      return call
+        .doOnEvent((content, throwable) -> {
+          if (throwable instanceof ConcurrencyLimiter.LimitExceededException) {
+            // Shed before being sent: says nothing about the endpoint.
+            return;
+          }
+          recorded.set(true);
+          breaker.onResult(
+            ConcurrencyLimiter.isOverload(throwable),
+            System.nanoTime() - start
+          );
+        })
+        .doFinally(() -> {
+          if (!recorded.get()) {
+            breaker.release();
+          }
+        });
+    });
+  }
+
+  private Maybe<String> share(InFlightKey key, Maybe<String> call) {
+    // Waiters share one ref-counted exchange: it is aborted once the last
+    // one goes away. The entry is released before the result is emitted, so
+    // later arrivals start a fresh call; a waiter that picked the entry up
+    // just before gets the result replayed instead of reconnecting to a
+    // finished exchange.
+    AtomicReference<Maybe<String>> shared = new AtomicReference<>();
+    AtomicReference<Maybe<String>> outcome = new AtomicReference<>();
+    Maybe<String> live = call
+      .doOnEvent((content, throwable) -> {
+        outcome.set(
+          throwable != null
+            ? Maybe.error(throwable)
+            : content == null
+              ? Maybe.empty()
+              : Maybe.just(content)
+        );
+        inFlight.remove(key, shared.get());
+      })
+      .doOnDispose(() -> inFlight.remove(key, shared.get()))
+      .toObservable()
+      .publish()
+      .refCount()
+      .singleElement();
+    shared.set(
+      Maybe.defer(() -> {
+        Maybe<String> result = outcome.get();
+        return result == null ? live : result;
+      })
+    );
+    return shared.get();
+  }
+
+  ChatCompletionTemplate requestTemplate(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    boolean useOpenAiJsonResponseFormat,
+    boolean stream
+  ) {
     if (
       endpoint == null ||
       endpoint.target() == null ||
@@ -71,46 +620,243 @@ public class TransformerLlmClient {
       );
     }
 
+    TemplateKey key = new TemplateKey(
+      endpoint,
+      systemPrompt,
+      useOpenAiJsonResponseFormat,
+      stream
+    );
+    ChatCompletionTemplate template = requestTemplates.get(key);
+    if (template != null) {
+      return template;
+    }
+
+    if (requestTemplates.size() >= MAX_REQUEST_TEMPLATES) {
+      // Only dynamic prompts produce many keys; start over rather than track
+      // recency on the hot path.
+      requestTemplates.clear();
+    }
+    return requestTemplates.computeIfAbsent(key, k ->
+      compileTemplate(
+        endpoint,
+        systemPrompt,
+        useOpenAiJsonResponseFormat,
+        stream
+      )
+    );
+  }
+
+  private ChatCompletionTemplate compileTemplate(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    boolean useOpenAiJsonResponseFormat,
+    boolean stream
+  ) {
     ObjectNode payload = buildChatCompletionPayload(
       endpoint.model(),
       systemPrompt,
-      userContent,
+      ChatCompletionTemplate.USER_CONTENT_PLACEHOLDER,
       useOpenAiJsonResponseFormat
     );
+    if (stream) {
+      payload.put("stream", true);
+    }
 
-    HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-      .uri(URI.create(normalizeTargetUrl(endpoint)))
-      .timeout(Duration.ofMillis(Math.max(timeoutMs, 1)))
-      .header("Content-Type", "application/json")
-      .POST(
-        HttpRequest.BodyPublishers.ofString(
-          OBJECT_MAPPER.writeValueAsString(payload),
-          StandardCharsets.UTF_8
-        )
+    List<String> headers = new ArrayList<>();
+    headers.add("Content-Type");
+    headers.add("application/json");
+    if (stream) {
+      headers.add("Accept");
+      headers.add(EVENT_STREAM_CONTENT_TYPE);
+    }
+    if (endpoint.authHeader() != null && !endpoint.authHeader().isBlank()) {
+      headers.add(endpoint.authHeader());
+      headers.add(endpoint.authValue() == null ? "" : endpoint.authValue());
+    }
+
+    try {
+      return ChatCompletionTemplate.compile(
+        URI.create(normalizeTargetUrl(endpoint)),
+        OBJECT_MAPPER.writeValueAsBytes(payload),
+        headers
+      );
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(
+        "Unable to serialize chat completion payload.",
+        e
       );
+    }
+  }
 
-    if (endpoint.authHeader() != null && !endpoint.authHeader().isBlank()) {
-      String authValue = endpoint.authValue() == null
-        ? ""
-        : endpoint.authValue();
-      requestBuilder.header(endpoint.authHeader(), authValue);
+  private Maybe<String> send(HttpRequest request, LongConsumer usage) {
+    return Maybe.create(emitter -> {
+      CompletableFuture<HttpResponse<byte[]>> future = httpClients
+        .apply(request.uri())
+        .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+      emitter.setCancellable(() -> future.cancel(true));
+      future.whenComplete((response, throwable) -> {
+        if (throwable != null) {
+          emitter.tryOnError(unwrap(throwable));
+          return;
+        }
+
+        try {
+          String content = readAssistantContent(response, usage);
+          if (content == null) {
+            emitter.onComplete();
+          } else {
+            emitter.onSuccess(content);
+          }
+        } catch (Exception e) {
+          emitter.tryOnError(e);
+        }
+      });
+    });
+  }
+
+  private Maybe<String> stream(
+    HttpRequest request,
+    int timeoutMs,
+    int maxContentBytes
+  ) {
+    Maybe<String> exchange = Maybe.create(emitter -> {
+      SseContentSubscriber events = new SseContentSubscriber(
+        maxContentBytes,
+        emitter::tryOnError
+      );
+      CompletableFuture<HttpResponse<String>> future = httpClients
+        .apply(request.uri())
+        .sendAsync(request, responseInfo ->
+          streamingBodySubscriber(responseInfo, events)
+        );
+      emitter.setCancellable(() -> {
+        events.cancel();
+        future.cancel(true);
+      });
+      future.whenComplete((response, throwable) -> {
+        if (throwable != null) {
+          emitter.tryOnError(unwrap(throwable));
+          return;
+        }
+
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+          emitter.tryOnError(
+            new LlmStatusException(status, retryAfter(response))
+          );
+          return;
+        }
+
+        String content = response.body();
+        if (
+          content != null &&
+          maxContentBytes > 0 &&
+          content.getBytes(StandardCharsets.UTF_8).length > maxContentBytes
+        ) {
+          emitter.tryOnError(new LlmResponseTooLargeException(maxContentBytes));
+        } else if (content == null) {
+          emitter.onComplete();
+        } else {
+          emitter.onSuccess(content);
+        }
+      });
+    });
+
+    // The request timeout only bounds the wait for response headers.
+    return exchange.timeout(Math.max(timeoutMs, 1), TimeUnit.MILLISECONDS);
+  }
+
+  private HttpResponse.BodySubscriber<String> streamingBodySubscriber(
+    HttpResponse.ResponseInfo responseInfo,
+    SseContentSubscriber events
+  ) {
+    int status = responseInfo.statusCode();
+    if (status < 200 || status >= 300) {
+      return HttpResponse.BodySubscribers.replacing(null);
+    }
+
+    boolean eventStream = responseInfo
+      .headers()
+      .firstValue("Content-Type")
+      .map(type -> type.startsWith(EVENT_STREAM_CONTENT_TYPE))
+      .orElse(false);
+    if (eventStream) {
+      return HttpResponse.BodySubscribers.fromLineSubscriber(
+        events,
+        SseContentSubscriber::content,
+        StandardCharsets.UTF_8,
+        null
+      );
     }
 
-    HttpResponse<String> response = httpClient.send(
-      requestBuilder.build(),
-      HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)
+    // Backends that ignore "stream": answer with a regular completion.
+    return HttpResponse.BodySubscribers.mapping(
+      HttpResponse.BodySubscribers.ofByteArray(),
+      body -> {
+        try {
+          return extractAssistantContent(OBJECT_MAPPER.readTree(body));
+        } catch (Exception e) {
+          throw new IllegalStateException("Invalid LLM response.", e);
+        }
+      }
     );
+  }
 
+  private String readAssistantContent(
+    HttpResponse<byte[]> response,
+    LongConsumer usage
+  ) throws Exception {
     if (response.statusCode() < 200 || response.statusCode() >= 300) {
-      throw new IllegalStateException(
-        "LLM call failed with status " + response.statusCode()
+      throw new LlmStatusException(
+        response.statusCode(),
+        retryAfter(response)
       );
     }
 
     JsonNode llmResponse = OBJECT_MAPPER.readTree(response.body());
+    reportUsage(llmResponse, usage);
     return extractAssistantContent(llmResponse);
   }
 
+  /**
+   * Passes the total tokens reported by the provider, from chat completion
+   * or responses API usage, to the consumer. Nothing is reported when the
+   * response carries no usage.
+   */
+  static void reportUsage(JsonNode llmResponse, LongConsumer usage) {
+    JsonNode tokens = llmResponse == null
+      ? null
+      : llmResponse.path("usage");
+    if (tokens == null || !tokens.isObject()) {
+      return;
+    }
+    if (tokens.path("total_tokens").canConvertToLong()) {
+      usage.accept(tokens.path("total_tokens").asLong());
+    } else if (tokens.has("prompt_tokens") || tokens.has("input_tokens")) {
+      usage.accept(
+        tokens.path("prompt_tokens").asLong() +
+        tokens.path("completion_tokens").asLong() +
+        tokens.path("input_tokens").asLong() +
+        tokens.path("output_tokens").asLong()
+      );
+    }
+  }
+
+  private static long retryAfter(HttpResponse<?> response) {
+    return RetryPolicy.retryAfterMs(
+      response.headers().firstValue(RETRY_AFTER_HEADER).orElse(null)
+    );
+  }
+
+  private Throwable unwrap(Throwable throwable) {
+    if (
+      throwable instanceof CompletionException && throwable.getCause() != null
+    ) {
+      return throwable.getCause();
+    }
+    return throwable;
+  }
+
   public ObjectNode buildChatCompletionPayload(
     String model,
     String systemPrompt,
@@ -133,7 +879,7 @@ public class TransformerLlmClient {
 
     ArrayNode messages = payload.putArray("messages");
     if (systemPrompt != null && !systemPrompt.isBlank()) {
-      messages.add(createMessage("system", systemPrompt));
+      messages.add(systemMessage(systemPrompt));
     }
     messages.add(createMessage("user", userContent == null ? "" : userContent));
 
@@ -146,6 +892,10 @@ public class TransformerLlmClient {
   }
 
   public String extractAssistantContent(JsonNode llmResponse) {
+    return assistantContent(llmResponse);
+  }
+
+  static String assistantContent(JsonNode llmResponse) {
     if (llmResponse == null || llmResponse.isNull()) {
       return null;
     }
@@ -184,10 +934,189 @@ public class TransformerLlmClient {
     return target + CHAT_COMPLETIONS_PATH;
   }
 
+  /**
+   * The system message only changes with the prompt, which is usually static
+   * per policy: the last one built is reused as long as the prompt matches.
+   * Payload nodes are serialized, never mutated, so sharing it is safe.
+   */
+  private ObjectNode systemMessage(String systemPrompt) {
+    SystemMessage cached = systemMessage;
+    if (cached != null && cached.prompt().equals(systemPrompt)) {
+      return cached.message();
+    }
+
+    ObjectNode message = createMessage("system", systemPrompt);
+    systemMessage = new SystemMessage(systemPrompt, message);
+    return message;
+  }
+
   private ObjectNode createMessage(String role, String content) {
     ObjectNode message = OBJECT_MAPPER.createObjectNode();
     message.put("role", role);
     message.put("content", content);
     return message;
   }
+
+  private record TemplateKey(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    boolean useOpenAiJsonResponseFormat,
+    boolean stream
+  ) {}
+
+  private record SystemMessage(String prompt, ObjectNode message) {}
+
+  private record BudgetKey(String target, String model) {}
+
+  private record InFlightKey(
+    ResolvedEndpoint endpoint,
+    String systemPrompt,
+    String userContent,
+    boolean useOpenAiJsonResponseFormat,
+    boolean stream,
+    int maxContentBytes
+  ) {}
+
+  /**
+   * Accumulates the content deltas of an OpenAI-compatible event stream and
+   * cancels the stream as soon as the content grows past the size limit.
+   */
+  static final class SseContentSubscriber implements Flow.Subscriber<String> {
+
+    private static final String DATA_PREFIX = "data:";
+    private static final String DONE = "[DONE]";
+
+    private final int maxContentBytes;
+    private final Consumer<Throwable> onAbort;
+    private final StringBuilder content = new StringBuilder();
+
+    private volatile Flow.Subscription subscription;
+    private long contentBytes;
+    private boolean received;
+    private boolean aborted;
+
+    SseContentSubscriber(
+      int maxContentBytes,
+      Consumer<Throwable> onAbort
+    ) {
+      this.maxContentBytes = maxContentBytes;
+      this.onAbort = onAbort;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+      if (aborted || !line.startsWith(DATA_PREFIX)) {
+        return;
+      }
+
+      String data = line.substring(DATA_PREFIX.length()).trim();
+      if (data.isEmpty() || DONE.equals(data)) {
+        return;
+      }
+
+      String delta;
+      try {
+        delta = extractDelta(OBJECT_MAPPER.readTree(data));
+      } catch (Exception e) {
+        abort(new IllegalStateException("Invalid LLM stream event.", e));
+        return;
+      }
+      if (delta == null) {
+        return;
+      }
+
+      received = true;
+      contentBytes += delta.getBytes(StandardCharsets.UTF_8).length;
+      if (maxContentBytes > 0 && contentBytes > maxContentBytes) {
+        abort(new LlmResponseTooLargeException(maxContentBytes));
+        return;
+      }
+      content.append(delta);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      // Reported through the response future.
+    }
+
+    @Override
+    public void onComplete() {
+      // The accumulated content is read by the body finisher.
+    }
+
+    String content() {
+      return received ? content.toString() : null;
+    }
+
+    void cancel() {
+      Flow.Subscription current = subscription;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+
+    private void abort(Throwable reason) {
+      aborted = true;
+      cancel();
+      onAbort.accept(reason);
+    }
+
+    private static String extractDelta(JsonNode event) {
+      JsonNode choice = event.path("choices").path(0);
+      JsonNode delta = choice.path("delta").path("content");
+      if (delta.isTextual()) {
+        return delta.asText();
+      }
+
+      JsonNode message = choice.path("message").path("content");
+      return message.isTextual() ? message.asText() : null;
+    }
+  }
+
+  /**
+   * Signals that the LLM endpoint answered with a non-2xx status.
+   */
+  public static final class LlmStatusException extends IllegalStateException {
+
+    private final int statusCode;
+    private final long retryAfterMs;
+
+    public LlmStatusException(int statusCode) {
+      this(statusCode, -1);
+    }
+
+    public LlmStatusException(int statusCode, long retryAfterMs) {
+      super("LLM call failed with status " + statusCode);
+      this.statusCode = statusCode;
+      this.retryAfterMs = retryAfterMs;
+    }
+
+    public int statusCode() {
+      return statusCode;
+    }
+
+    /**
+     * Delay requested by the Retry-After header, or -1 when absent.
+     */
+    public long retryAfterMs() {
+      return retryAfterMs;
+    }
+  }
+
+  /**
+   * Signals that the LLM produced more content than the caller accepts.
+   */
+  public static final class LlmResponseTooLargeException
+    extends RuntimeException {
+
+    public LlmResponseTooLargeException(int maxContentBytes) {
+      super("LLM response exceeds " + maxContentBytes + " bytes.");
+    }
+  }
 }
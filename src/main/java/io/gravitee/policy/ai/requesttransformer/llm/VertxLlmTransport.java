@@ -0,0 +1,297 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient.LlmResponseTooLargeException;
+import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient.SseContentSubscriber;
+import io.netty.buffer.ByteBufInputStream;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeEmitter;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.parsetools.RecordParser;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * Sends chat completions with the gateway Vert.x HTTP client.
+ *
+ * Responses are handled on the Vert.x event loop that issued the call, so no
+ * extra thread pool is involved, and bodies are read straight from Netty
+ * buffers. One HTTP client is shared per Vert.x instance, configured from the
+ * same environment variables as {@link LlmHttpClients}.
+ */
+final class VertxLlmTransport {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private static final ConcurrentMap<Vertx, VertxLlmTransport> SHARED =
+    new ConcurrentHashMap<>();
+
+  private final HttpClient httpClient;
+
+  VertxLlmTransport(Vertx vertx, LlmHttpClients settings) {
+    HttpClientOptions options = new HttpClientOptions()
+      .setProtocolVersion(
+        settings.http2() ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1
+      )
+      .setUseAlpn(settings.http2())
+      .setKeepAlive(true)
+      .setConnectTimeout((int) settings.connectTimeout().toMillis())
+      .setMaxPoolSize(settings.maxConnectionsPerHost());
+    if (settings.keepAliveSeconds() > 0) {
+      options.setKeepAliveTimeout((int) settings.keepAliveSeconds());
+      options.setHttp2KeepAliveTimeout((int) settings.keepAliveSeconds());
+    }
+    this.httpClient = vertx.createHttpClient(options);
+  }
+
+  static VertxLlmTransport shared(Vertx vertx) {
+    return SHARED.computeIfAbsent(vertx, v ->
+      new VertxLlmTransport(v, LlmHttpClients.shared())
+    );
+  }
+
+  Maybe<String> send(
+    ChatCompletionTemplate template,
+    String userContent,
+    int timeoutMs,
+    LongConsumer usage
+  ) {
+    Maybe<String> exchange = Maybe.create(emitter -> {
+      AtomicReference<HttpClientRequest> current = cancellable(emitter);
+      httpClient
+        .request(options(template))
+        .compose(request -> {
+          current.set(request);
+          return request.send(body(template, userContent));
+        })
+        .compose(response ->
+          response
+            .body()
+            .compose(body -> checkStatus(response, body))
+        )
+        .onComplete(result -> {
+          if (result.failed()) {
+            emitter.tryOnError(result.cause());
+            return;
+          }
+          emitContent(emitter, result.result(), 0, usage);
+        });
+    });
+    return exchange.timeout(Math.max(timeoutMs, 1), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Streaming counterpart of {@link #send}: server-sent event lines are fed
+   * to the same accumulator as the JDK client, as they arrive.
+   */
+  Maybe<String> stream(
+    ChatCompletionTemplate template,
+    String userContent,
+    int timeoutMs,
+    int maxContentBytes
+  ) {
+    Maybe<String> exchange = Maybe.create(emitter -> {
+      AtomicReference<HttpClientRequest> current = cancellable(emitter);
+      httpClient
+        .request(options(template))
+        .compose(request -> {
+          current.set(request);
+          return request.send(body(template, userContent));
+        })
+        .onComplete(result -> {
+          if (result.failed()) {
+            emitter.tryOnError(result.cause());
+            return;
+          }
+          HttpClientResponse response = result.result();
+          if (isEventStream(response) && isSuccess(response)) {
+            readEvents(emitter, current, response, maxContentBytes);
+          } else {
+            response
+              .body()
+              .compose(body -> checkStatus(response, body))
+              .onComplete(body -> {
+                if (body.failed()) {
+                  emitter.tryOnError(body.cause());
+                } else {
+                  emitContent(
+                    emitter,
+                    body.result(),
+                    maxContentBytes,
+                    tokens -> {}
+                  );
+                }
+              });
+          }
+        });
+    });
+
+    // Bounds the whole exchange, not only the wait for response headers.
+    return exchange.timeout(Math.max(timeoutMs, 1), TimeUnit.MILLISECONDS);
+  }
+
+  private static void readEvents(
+    MaybeEmitter<String> emitter,
+    AtomicReference<HttpClientRequest> current,
+    HttpClientResponse response,
+    int maxContentBytes
+  ) {
+    SseContentSubscriber events = new SseContentSubscriber(
+      maxContentBytes,
+      emitter::tryOnError
+    );
+    events.onSubscribe(
+      new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+          // Lines are pushed by the response handler.
+        }
+
+        @Override
+        public void cancel() {
+          reset(current);
+        }
+      }
+    );
+
+    response.handler(
+      RecordParser.newDelimited("\n", line -> {
+        String text = line.toString(StandardCharsets.UTF_8);
+        events.onNext(
+          text.endsWith("\r") ? text.substring(0, text.length() - 1) : text
+        );
+      })
+    );
+    response.exceptionHandler(emitter::tryOnError);
+    response.endHandler(ignored -> {
+      String content = events.content();
+      if (content == null) {
+        emitter.onComplete();
+      } else {
+        emitter.onSuccess(content);
+      }
+    });
+  }
+
+  private static AtomicReference<HttpClientRequest> cancellable(
+    MaybeEmitter<String> emitter
+  ) {
+    AtomicReference<HttpClientRequest> current = new AtomicReference<>();
+    emitter.setCancellable(() -> reset(current));
+    return current;
+  }
+
+  private static void reset(AtomicReference<HttpClientRequest> current) {
+    HttpClientRequest request = current.get();
+    if (request != null) {
+      request.reset();
+    }
+  }
+
+  private static RequestOptions options(ChatCompletionTemplate template) {
+    RequestOptions options = new RequestOptions()
+      .setMethod(HttpMethod.POST)
+      .setAbsoluteURI(template.uri().toString());
+    String[] headers = template.headers();
+    for (int i = 0; i + 1 < headers.length; i += 2) {
+      options.putHeader(headers[i], headers[i + 1]);
+    }
+    return options;
+  }
+
+  private static Buffer body(
+    ChatCompletionTemplate template,
+    String userContent
+  ) {
+    return Buffer.buffer(template.bodyBuffer(userContent));
+  }
+
+  private static boolean isSuccess(HttpClientResponse response) {
+    return response.statusCode() >= 200 && response.statusCode() < 300;
+  }
+
+  private static boolean isEventStream(HttpClientResponse response) {
+    String contentType = response.getHeader("Content-Type");
+    return (
+      contentType != null &&
+      contentType.startsWith(TransformerLlmClient.EVENT_STREAM_CONTENT_TYPE)
+    );
+  }
+
+  private static Future<Buffer> checkStatus(
+    HttpClientResponse response,
+    Buffer body
+  ) {
+    if (!isSuccess(response)) {
+      return Future.failedFuture(
+        new TransformerLlmClient.LlmStatusException(
+          response.statusCode(),
+          RetryPolicy.retryAfterMs(
+            response.getHeader(TransformerLlmClient.RETRY_AFTER_HEADER)
+          )
+        )
+      );
+    }
+    return Future.succeededFuture(body);
+  }
+
+  private static void emitContent(
+    MaybeEmitter<String> emitter,
+    Buffer body,
+    int maxContentBytes,
+    LongConsumer usage
+  ) {
+    String content;
+    try {
+      JsonNode llmResponse = OBJECT_MAPPER.readTree(
+        new ByteBufInputStream(body.getByteBuf())
+      );
+      TransformerLlmClient.reportUsage(llmResponse, usage);
+      content = TransformerLlmClient.assistantContent(llmResponse);
+    } catch (Exception e) {
+      emitter.tryOnError(e);
+      return;
+    }
+
+    if (content == null) {
+      emitter.onComplete();
+    } else if (
+      maxContentBytes > 0 &&
+      content.getBytes(StandardCharsets.UTF_8).length > maxContentBytes
+    ) {
+      emitter.tryOnError(new LlmResponseTooLargeException(maxContentBytes));
+    } else {
+      emitter.onSuccess(content);
+    }
+  }
+}
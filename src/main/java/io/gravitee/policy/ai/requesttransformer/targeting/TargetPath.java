@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.targeting;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled JSON target path.
+ *
+ * Supports a small JSONPath subset: {@code $}, {@code .field},
+ * {@code [n]} and {@code [*]}, e.g. {@code $.messages[*].content}. A path is
+ * parsed once and then reused to select and replace targets in any number
+ * of documents.
+ */
+public final class TargetPath {
+
+  public static final String ROOT = "$";
+
+  private static final String UNSUPPORTED_FORMAT =
+    "Unsupported target path format. Expected '$' or '$.field[.subField]', optionally with '[n]' or '[*]'.";
+
+  private final String expression;
+  private final List<Segment> segments;
+  private final boolean definite;
+
+  private TargetPath(String expression, List<Segment> segments) {
+    this.expression = expression;
+    this.segments = List.copyOf(segments);
+    this.definite = this.segments.stream().noneMatch(Segment::wildcard);
+  }
+
+  /**
+   * Compiles a target path, treating a blank path as the document root.
+   *
+   * @throws IllegalArgumentException when the path is not supported
+   */
+  public static TargetPath compile(String expression) {
+    String path = expression == null || expression.isBlank()
+      ? ROOT
+      : expression.trim();
+    if (!path.startsWith(ROOT)) {
+      throw new IllegalArgumentException(UNSUPPORTED_FORMAT);
+    }
+
+    List<Segment> segments = new ArrayList<>();
+    int i = ROOT.length();
+    while (i < path.length()) {
+      char c = path.charAt(i);
+      if (c == '.') {
+        int end = i + 1;
+        while (
+          end < path.length() &&
+          path.charAt(end) != '.' &&
+          path.charAt(end) != '['
+        ) {
+          end++;
+        }
+        String field = path.substring(i + 1, end);
+        if (field.isBlank()) {
+          throw new IllegalArgumentException("Target path cannot be empty.");
+        }
+        segments.add(Segment.field(field));
+        i = end;
+      } else if (c == '[') {
+        int end = path.indexOf(']', i);
+        if (end < 0) {
+          throw new IllegalArgumentException(UNSUPPORTED_FORMAT);
+        }
+        segments.add(Segment.index(path.substring(i + 1, end).trim()));
+        i = end + 1;
+      } else {
+        throw new IllegalArgumentException(UNSUPPORTED_FORMAT);
+      }
+    }
+
+    return new TargetPath(path, segments);
+  }
+
+  public String expression() {
+    return expression;
+  }
+
+  public boolean isRoot() {
+    return segments.isEmpty();
+  }
+
+  /**
+   * Whether the path can match at most one node, i.e. it has no wildcard.
+   */
+  public boolean isDefinite() {
+    return definite;
+  }
+
+  /**
+   * Returns the matched nodes in document order.
+   */
+  public List<JsonNode> select(JsonNode root) {
+    List<JsonNode> matches = new ArrayList<>();
+    collect(root, 0, matches);
+    return matches;
+  }
+
+  /**
+   * Locates the matches while streaming through a document, without building
+   * a tree of it. Only the matched values are materialized; the rest of the
+   * document is skipped token by token. The parser must have a codec and be
+   * positioned before the first token. The whole document is read so that
+   * malformed JSON is still rejected.
+   */
+  public List<Match> locate(JsonParser parser) throws IOException {
+    List<Match> matches = new ArrayList<>();
+    if (parser.nextToken() == null) {
+      return matches;
+    }
+
+    scan(parser, 0, matches);
+    if (parser.nextToken() != null) {
+      throw new JsonParseException(parser, "Unexpected content after JSON.");
+    }
+    return matches;
+  }
+
+  /**
+   * Replaces the matched nodes, in document order, with the given values and
+   * returns the resulting root. The root itself is returned unchanged when
+   * the path is {@code $}: callers use the replacement as the new root.
+   *
+   * @throws IllegalArgumentException when the number of values does not match
+   */
+  public JsonNode replace(JsonNode root, List<JsonNode> replacements) {
+    if (isRoot()) {
+      if (replacements.size() != 1) {
+        throw new IllegalArgumentException(
+          "Root target expects exactly one replacement."
+        );
+      }
+      return replacements.get(0);
+    }
+
+    List<JsonNode> parents = new ArrayList<>();
+    collectParents(root, 0, parents);
+    Segment last = segments.get(segments.size() - 1);
+
+    int next = 0;
+    for (JsonNode parent : parents) {
+      if (last.wildcard()) {
+        ArrayNode array = (ArrayNode) parent;
+        for (int i = 0; i < array.size(); i++) {
+          array.set(i, replacementAt(replacements, next++));
+        }
+      } else if (last.field() != null) {
+        ((ObjectNode) parent).set(
+          last.field(),
+          replacementAt(replacements, next++)
+        );
+      } else {
+        ((ArrayNode) parent).set(
+          last.index(),
+          replacementAt(replacements, next++)
+        );
+      }
+    }
+
+    if (next != replacements.size()) {
+      throw new IllegalArgumentException(
+        "Expected " + next + " replacements but got " + replacements.size()
+      );
+    }
+    return root;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  private void collect(JsonNode node, int depth, List<JsonNode> matches) {
+    if (node == null || node.isMissingNode()) {
+      return;
+    }
+    if (depth == segments.size()) {
+      matches.add(node);
+      return;
+    }
+
+    Segment segment = segments.get(depth);
+    if (segment.wildcard()) {
+      if (node.isArray()) {
+        for (JsonNode element : node) {
+          collect(element, depth + 1, matches);
+        }
+      }
+    } else if (segment.field() != null) {
+      if (node.isObject()) {
+        collect(node.get(segment.field()), depth + 1, matches);
+      }
+    } else if (node.isArray()) {
+      collect(node.get(segment.index()), depth + 1, matches);
+    }
+  }
+
+  private void collectParents(JsonNode node, int depth, List<JsonNode> out) {
+    if (node == null) {
+      return;
+    }
+
+    Segment segment = segments.get(depth);
+    if (depth == segments.size() - 1) {
+      // Only parents that currently hold a match are replaced.
+      boolean holdsMatch = segment.wildcard()
+        ? node.isArray()
+        : segment.field() != null
+          ? node.isObject() && node.has(segment.field())
+          : node.isArray() && node.has(segment.index());
+      if (holdsMatch) {
+        out.add(node);
+      }
+      return;
+    }
+
+    if (segment.wildcard()) {
+      if (node.isArray()) {
+        for (JsonNode element : node) {
+          collectParents(element, depth + 1, out);
+        }
+      }
+    } else if (segment.field() != null) {
+      if (node.isObject()) {
+        collectParents(node.get(segment.field()), depth + 1, out);
+      }
+    } else if (node.isArray()) {
+      collectParents(node.get(segment.index()), depth + 1, out);
+    }
+  }
+
+  private void scan(JsonParser parser, int depth, List<Match> matches)
+    throws IOException {
+    if (depth == segments.size()) {
+      long start = parser.currentTokenLocation().getByteOffset();
+      JsonNode value = parser.readValueAsTree();
+      long end = parser.currentLocation().getByteOffset();
+      matches.add(new Match(start, end, value));
+      return;
+    }
+
+    Segment segment = segments.get(depth);
+    JsonToken token = parser.currentToken();
+    if (segment.field() != null && token == JsonToken.START_OBJECT) {
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        boolean selected = segment.field().equals(parser.currentName());
+        parser.nextToken();
+        if (selected) {
+          scan(parser, depth + 1, matches);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    } else if (segment.field() == null && token == JsonToken.START_ARRAY) {
+      int index = 0;
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        if (segment.wildcard() || index == segment.index()) {
+          scan(parser, depth + 1, matches);
+        } else {
+          parser.skipChildren();
+        }
+        index++;
+      }
+    } else {
+      parser.skipChildren();
+    }
+  }
+
+  private static JsonNode replacementAt(List<JsonNode> replacements, int i) {
+    if (i >= replacements.size()) {
+      throw new IllegalArgumentException(
+        "Not enough replacements for target path matches."
+      );
+    }
+    return replacements.get(i);
+  }
+
+  /**
+   * A matched value and its byte range {@code [start, end)} in the scanned
+   * document.
+   */
+  public record Match(long start, long end, JsonNode value) {}
+
+  private record Segment(String field, int index, boolean wildcard) {
+    static Segment field(String name) {
+      return new Segment(name, -1, false);
+    }
+
+    static Segment index(String value) {
+      if ("*".equals(value)) {
+        return new Segment(null, -1, true);
+      }
+      try {
+        int index = Integer.parseInt(value);
+        if (index >= 0) {
+          return new Segment(null, index, false);
+        }
+      } catch (NumberFormatException ignored) {
+        // Reported below.
+      }
+      throw new IllegalArgumentException(
+        "Unsupported array index '" + value + "' in target path."
+      );
+    }
+  }
+}
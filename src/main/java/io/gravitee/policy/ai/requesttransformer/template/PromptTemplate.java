@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.template;
+
+import io.gravitee.el.TemplateEngine;
+
+/**
+ * Prompt classified once per policy instance. A static prompt is returned
+ * as-is on every request; only a prompt containing EL markers is handed to
+ * the template engine, which caches the parsed expression itself.
+ */
+public final class PromptTemplate {
+
+  private static final String TEMPLATE_MARKER_OPEN = "{#";
+  private static final String TEMPLATE_MARKER_OPEN_ALT = "${";
+
+  private final String template;
+  private final boolean dynamic;
+
+  private PromptTemplate(String template, boolean dynamic) {
+    this.template = template;
+    this.dynamic = dynamic;
+  }
+
+  public static PromptTemplate compile(String template) {
+    return new PromptTemplate(template, hasTemplateMarker(template));
+  }
+
+  public static boolean hasTemplateMarker(String value) {
+    return (
+      value != null &&
+      (value.contains(TEMPLATE_MARKER_OPEN) ||
+        value.contains(TEMPLATE_MARKER_OPEN_ALT))
+    );
+  }
+
+  public String template() {
+    return template;
+  }
+
+  public boolean isStatic() {
+    return !dynamic;
+  }
+
+  /**
+   * Returns the prompt for the current request. The same String instance is
+   * returned for every request when the prompt is static.
+   */
+  public String render(TemplateEngine templateEngine) {
+    if (!dynamic) {
+      return template;
+    }
+    if (templateEngine == null) {
+      throw new IllegalStateException("Template engine is not available.");
+    }
+    return templateEngine.convert(template);
+  }
+}
@@ -21,13 +21,17 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.gravitee.common.http.HttpStatusCode;
 import io.gravitee.el.TemplateEngine;
 import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
 import io.gravitee.gateway.reactive.api.ExecutionFailure;
 import io.gravitee.gateway.reactive.api.context.http.HttpPlainExecutionContext;
 import io.gravitee.gateway.reactive.api.context.http.HttpPlainRequest;
@@ -36,11 +40,15 @@ import io.gravitee.policy.ai.requesttransformer.configuration.ErrorMode;
 import io.gravitee.policy.ai.requesttransformer.llm.EndpointGroupResolver;
 import io.gravitee.policy.ai.requesttransformer.llm.ResolvedEndpoint;
 import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient;
+import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient.LlmResponseTooLargeException;
 import io.gravitee.reporter.api.v4.metric.Metrics;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
-import io.reactivex.rxjava3.core.MaybeTransformer;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
 import io.reactivex.rxjava3.observers.TestObserver;
+import io.vertx.core.Vertx;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.BeforeEach;
@@ -62,6 +70,8 @@ class AiRequestTransformerPolicyTest {
   @Mock
   private Metrics metrics;
 
+  private final HttpHeaders headers = HttpHeaders.create();
+
   @Mock
   private TemplateEngine templateEngine;
 
@@ -74,6 +84,7 @@ class AiRequestTransformerPolicyTest {
   @BeforeEach
   void setUp() {
     lenient().when(ctx.request()).thenReturn(request);
+    lenient().when(request.headers()).thenReturn(headers);
     lenient().when(ctx.metrics()).thenReturn(metrics);
     lenient().when(ctx.getTemplateEngine()).thenReturn(templateEngine);
     lenient()
@@ -89,16 +100,18 @@ class AiRequestTransformerPolicyTest {
     configuration.setPrompt("rewrite this");
 
     when(endpointResolver.resolve(any(), any())).thenReturn(
-      new ResolvedEndpoint(
-        "https://llm.example.com",
-        "Authorization",
-        "Bearer x",
-        "gpt-4o-mini"
+      Maybe.just(
+        new ResolvedEndpoint(
+          "https://llm.example.com",
+          "Authorization",
+          "Bearer x",
+          "gpt-4o-mini"
+        )
       )
     );
     when(
       llmClient.transform(any(), eq("rewrite this"), eq("hello"), eq(30000))
-    ).thenReturn("transformed");
+    ).thenReturn(Maybe.just("transformed"));
 
     AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
       configuration,
@@ -121,6 +134,36 @@ class AiRequestTransformerPolicyTest {
     );
   }
 
+  @Test
+  void shouldLookUpVertxAgainUntilItIsAvailable() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    Vertx vertx = mock(Vertx.class);
+    when(ctx.getComponent(Vertx.class)).thenReturn(null, vertx);
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(llmClient.transform(any(), any(), any(), anyInt())).thenReturn(
+      Maybe.just("ok")
+    );
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    execute(policy, "hello").observer.assertComplete();
+    execute(policy, "hello").observer.assertComplete();
+    execute(policy, "hello").observer.assertComplete();
+
+    verify(llmClient).useVertx(vertx);
+    verify(ctx, times(2)).getComponent(Vertx.class);
+  }
+
   @Test
   void shouldRenderPromptTemplateBeforeCallingLlm() throws Exception {
     AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
@@ -132,11 +175,13 @@ class AiRequestTransformerPolicyTest {
       "Hello req-1"
     );
     when(endpointResolver.resolve(any(), any())).thenReturn(
-      new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
     );
     when(
       llmClient.transform(any(), eq("Hello req-1"), eq("hello"), eq(30000))
-    ).thenReturn("ok");
+    ).thenReturn(Maybe.just("ok"));
 
     AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
       configuration,
@@ -151,6 +196,300 @@ class AiRequestTransformerPolicyTest {
     verify(templateEngine).convert("Hello {#request.id}");
   }
 
+  @Test
+  void shouldReplaceTargetedFieldAndKeepSiblings() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setTargetPath("$.message");
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("hello"), eq(30000))
+    ).thenReturn(Maybe.just("\"HELLO\""));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(policy, "{\"message\":\"hello\",\"id\":1}");
+
+    result.observer.assertComplete().assertNoErrors();
+    String expected = "{\"message\":\"HELLO\",\"id\":1}";
+    assertThat(result.transformedBody.toString()).isEqualTo(expected);
+    verify(request).contentLength(expected.length());
+  }
+
+  @Test
+  void shouldTransformEveryWildcardTargetInOneCall() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setTargetPath("$.items[*].text");
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transform(
+        any(),
+        eq("rewrite this"),
+        eq("[\"a\",\"b\"]"),
+        eq(30000)
+      )
+    ).thenReturn(Maybe.just("[\"A\",\"B\"]"));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(
+      policy,
+      "{\"items\":[{\"text\":\"a\"},{\"text\":\"b\"}]}"
+    );
+
+    result.observer.assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo(
+      "{\"items\":[{\"text\":\"A\"},{\"text\":\"B\"}]}"
+    );
+  }
+
+  @Test
+  void shouldFanOutWildcardTargetsAndKeepElementOrder() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setTargetPath("$.items[*].text");
+    configuration.getFanOut().setEnabled(true);
+    configuration.getFanOut().setMaxConcurrency(3);
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    // The first element answers last: results must still come back in order.
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("a"), eq(30000))
+    ).thenReturn(Maybe.just("\"A\"").delay(50, TimeUnit.MILLISECONDS));
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("b"), eq(30000))
+    ).thenReturn(Maybe.just("\"B\""));
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("c"), eq(30000))
+    ).thenReturn(Maybe.just("\"C\""));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(
+      policy,
+      "{\"items\":[{\"text\":\"a\"},{\"text\":\"b\"},{\"text\":\"c\"}]}"
+    );
+
+    result.observer.await().assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo(
+      "{\"items\":[{\"text\":\"A\"},{\"text\":\"B\"},{\"text\":\"C\"}]}"
+    );
+    verify(llmClient, times(3)).transform(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  void shouldKeepFailedFanOutElementInFailOpen() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setTargetPath("$.items[*]");
+    configuration.getFanOut().setEnabled(true);
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("a"), eq(30000))
+    ).thenReturn(Maybe.error(new IllegalStateException("boom")));
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("b"), eq(30000))
+    ).thenReturn(Maybe.just("\"B\""));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(policy, "{\"items\":[\"a\",\"b\"]}");
+
+    result.observer.assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo(
+      "{\"items\":[\"a\",\"B\"]}"
+    );
+  }
+
+  @Test
+  void shouldSpliceTargetsIntoOriginalBytesWithStreamingTargeting()
+    throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setStreamingTargeting(true);
+    configuration.setTargetPath("$.items[*].text");
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transform(
+        any(),
+        eq("rewrite this"),
+        eq("[\"a\",\"b\"]"),
+        eq(30000)
+      )
+    ).thenReturn(Maybe.just("[\"A\", {\"long\": \"B\"}]"));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(
+      policy,
+      "{ \"items\": [ {\"text\": \"a\"}, {\"text\": \"b\", \"n\": 1} ] }"
+    );
+
+    result.observer.assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo(
+      "{ \"items\": [ {\"text\": \"A\"}, {\"text\": {\"long\":\"B\"}, \"n\": 1} ] }"
+    );
+  }
+
+  @Test
+  void shouldSpliceLastDuplicateKeyWithStreamingTargeting() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_CLOSED
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setStreamingTargeting(true);
+    configuration.setTargetPath("$.a");
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("2"), eq(30000))
+    ).thenReturn(Maybe.just("\"B\""));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(policy, "{\"a\":\"1\",\"a\":\"2\"}");
+
+    result.observer.assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo(
+      "{\"a\":\"1\",\"a\":\"B\"}"
+    );
+  }
+
+  @Test
+  void shouldTransformSeveralTargetPathsInOneCall() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setTargetPaths(List.of("$.title", "$.body.text"));
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transform(
+        any(),
+        eq("rewrite this"),
+        eq("{\"$.title\":\"t\",\"$.body.text\":\"x\"}"),
+        eq(30000)
+      )
+    ).thenReturn(Maybe.just("{\"$.title\":\"T\",\"$.body.text\":\"X\"}"));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(
+      policy,
+      "{\"title\":\"t\",\"body\":{\"text\":\"x\",\"id\":1}}"
+    );
+
+    result.observer.assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo(
+      "{\"title\":\"T\",\"body\":{\"text\":\"X\",\"id\":1}}"
+    );
+    verify(llmClient).transform(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  void shouldFallbackToOriginalBodyWhenMultiFieldOutputMissesATarget()
+    throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setStreamingTargeting(true);
+    configuration.setTargetPaths(List.of("$.title", "$.body.text"));
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(llmClient.transform(any(), any(), any(), anyInt())).thenReturn(
+      Maybe.just("{\"$.title\":\"T\"}")
+    );
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    String body = "{\"title\":\"t\",\"body\":{\"text\":\"x\"}}";
+    PolicyResult result = execute(policy, body);
+
+    result.observer.assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo(body);
+  }
+
   @Test
   void shouldFallbackToOriginalBodyInFailOpenWhenTargetedOutputIsInvalidJson()
     throws Exception {
@@ -161,11 +500,13 @@ class AiRequestTransformerPolicyTest {
     configuration.setTargetPath("$.message");
 
     when(endpointResolver.resolve(any(), any())).thenReturn(
-      new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
     );
     when(
       llmClient.transform(any(), eq("rewrite this"), eq("hello"), eq(30000))
-    ).thenReturn("plain text");
+    ).thenReturn(Maybe.just("plain text"));
 
     AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
       configuration,
@@ -212,10 +553,12 @@ class AiRequestTransformerPolicyTest {
       ErrorMode.FAIL_OPEN
     );
     when(endpointResolver.resolve(any(), any())).thenReturn(
-      new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
     );
-    when(llmClient.transform(any(), any(), any(), anyInt())).thenThrow(
-      new IllegalStateException("status 401")
+    when(llmClient.transform(any(), any(), any(), anyInt())).thenReturn(
+      Maybe.error(new IllegalStateException("status 401"))
     );
 
     AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
@@ -242,10 +585,12 @@ class AiRequestTransformerPolicyTest {
       ErrorMode.FAIL_CLOSED
     );
     when(endpointResolver.resolve(any(), any())).thenReturn(
-      new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
     );
-    when(llmClient.transform(any(), any(), any(), anyInt())).thenThrow(
-      new IllegalStateException("status 401")
+    when(llmClient.transform(any(), any(), any(), anyInt())).thenReturn(
+      Maybe.error(new IllegalStateException("status 401"))
     );
 
     AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
@@ -277,7 +622,7 @@ class AiRequestTransformerPolicyTest {
     AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
       ErrorMode.FAIL_CLOSED
     );
-    when(endpointResolver.resolve(any(), any())).thenReturn(null);
+    when(endpointResolver.resolve(any(), any())).thenReturn(Maybe.empty());
 
     AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
       configuration,
@@ -303,26 +648,275 @@ class AiRequestTransformerPolicyTest {
     );
   }
 
+  @Test
+  void shouldInterruptInFailClosedWhenStreamedResponseExceedsLimit() {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_CLOSED
+    );
+    configuration.setStreamLlmResponse(true);
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transformStreaming(
+        any(),
+        eq("rewrite this"),
+        eq("hello"),
+        eq(30000),
+        eq(false),
+        eq(1024 * 1024)
+      )
+    ).thenReturn(Maybe.error(new LlmResponseTooLargeException(1024 * 1024)));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(policy, "hello");
+
+    result.observer.assertComplete().assertNoErrors();
+    ArgumentCaptor<ExecutionFailure> captor = ArgumentCaptor.forClass(
+      ExecutionFailure.class
+    );
+    verify(ctx).interruptWith(captor.capture());
+    assertThat(captor.getValue().message()).contains("maxLlmResponseBodySize");
+  }
+
+  @Test
+  void shouldPassOversizedBodyThroughFromContentLengthWithoutBuffering() {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setMaxRequestBodySize(4);
+    headers.set(HttpHeaderNames.CONTENT_LENGTH, "5");
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(policy, "hello");
+
+    result.observer.assertComplete().assertNoErrors();
+    verify(request, never()).onChunks(any());
+    verify(endpointResolver, never()).resolve(any(), any());
+    verify(metrics).putAdditionalMetric(
+      AiRequestTransformerPolicy.METRIC_TRANSFORMED_COUNT,
+      0L
+    );
+  }
+
+  @Test
+  void shouldStreamChunkedBodyThroughOnceLimitIsCrossed() {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.setMaxRequestBodySize(4);
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(
+      policy,
+      Flowable.just(
+        Buffer.buffer("he"),
+        Buffer.buffer("ll"),
+        Buffer.buffer("o "),
+        Buffer.buffer("world")
+      )
+    );
+
+    result.observer.assertComplete().assertNoErrors();
+    assertThat(result.transformedBody.toString()).isEqualTo("hello world");
+    verify(endpointResolver, never()).resolve(any(), any());
+  }
+
+  @Test
+  void shouldInterruptInFailClosedWhenChunkedBodyExceedsLimit() {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_CLOSED
+    );
+    configuration.setMaxRequestBodySize(4);
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult result = execute(
+      policy,
+      Flowable.just(Buffer.buffer("hel"), Buffer.buffer("lo"))
+    );
+
+    result.observer.assertComplete().assertNoErrors();
+    ArgumentCaptor<ExecutionFailure> captor = ArgumentCaptor.forClass(
+      ExecutionFailure.class
+    );
+    verify(ctx).interruptWith(captor.capture());
+    assertThat(captor.getValue().message()).contains("maxRequestBodySize");
+  }
+
+  @Test
+  void shouldServeRepeatedTransformationFromResultCache() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.getResultCache().setEnabled(true);
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(
+      llmClient.transform(any(), eq("rewrite this"), eq("hello"), eq(30000))
+    ).thenReturn(Maybe.just("transformed"));
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult first = execute(policy, "hello");
+    PolicyResult second = execute(policy, "hello");
+
+    first.observer.assertComplete().assertNoErrors();
+    second.observer.assertComplete().assertNoErrors();
+    assertThat(second.transformedBody.toString()).isEqualTo("transformed");
+    verify(endpointResolver).resolve(any(), any());
+    verify(llmClient).transform(any(), any(), any(), anyInt());
+    verify(metrics).putAdditionalMetric(
+      AiRequestTransformerPolicy.METRIC_CACHE_HIT_COUNT,
+      1L
+    );
+    verify(metrics).putAdditionalMetric(
+      AiRequestTransformerPolicy.METRIC_CACHE_MISS_COUNT,
+      1L
+    );
+  }
+
+  @Test
+  void shouldNotCacheOutputThatFailedValidation() throws Exception {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.getResultCache().setEnabled(true);
+    configuration.setJsonTargetingEnabled(true);
+    configuration.setTargetPath("$.text");
+
+    when(endpointResolver.resolve(any(), any())).thenReturn(
+      Maybe.just(
+        new ResolvedEndpoint("https://llm.example.com", null, null, "gpt")
+      )
+    );
+    when(llmClient.transform(any(), any(), any(), anyInt())).thenReturn(
+      Maybe.just("not json")
+    );
+
+    AiRequestTransformerPolicy policy = new AiRequestTransformerPolicy(
+      configuration,
+      endpointResolver,
+      llmClient
+    );
+
+    PolicyResult first = execute(policy, "{\"text\":\"hello\"}");
+    PolicyResult second = execute(policy, "{\"text\":\"hello\"}");
+
+    first.observer.assertComplete().assertNoErrors();
+    second.observer.assertComplete().assertNoErrors();
+    verify(llmClient, times(2)).transform(any(), any(), any(), anyInt());
+    verify(metrics, never()).putAdditionalMetric(
+      AiRequestTransformerPolicy.METRIC_CACHE_HIT_COUNT,
+      1L
+    );
+  }
+
+  @Test
+  void shouldShareTokenBudgetAcrossPolicyInstances() {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.getTokenBudget().setEnabled(true);
+    configuration.getTokenBudget().setTokensPerMinute(100);
+    TransformerLlmClient first = new TransformerLlmClient();
+    TransformerLlmClient second = new TransformerLlmClient();
+    new AiRequestTransformerPolicy(configuration, endpointResolver, first);
+    new AiRequestTransformerPolicy(configuration, endpointResolver, second);
+    ResolvedEndpoint endpoint = new ResolvedEndpoint(
+      "https://shared-budget.example.com",
+      null,
+      null,
+      "gpt"
+    );
+
+    assertThat(first.tokenBudget(endpoint).tryCharge(60)).isTrue();
+
+    assertThat(second.tokenBudget(endpoint)).isSameAs(
+      first.tokenBudget(endpoint)
+    );
+    assertThat(second.tokenBudget(endpoint).tryCharge(60)).isFalse();
+  }
+
+  @Test
+  void shouldShareConcurrencyLimiterAcrossPolicyInstances() {
+    AiRequestTransformerPolicyConfiguration configuration = baseConfiguration(
+      ErrorMode.FAIL_OPEN
+    );
+    configuration.getConcurrencyLimit().setEnabled(true);
+    TransformerLlmClient first = new TransformerLlmClient();
+    TransformerLlmClient second = new TransformerLlmClient();
+    new AiRequestTransformerPolicy(configuration, endpointResolver, first);
+    new AiRequestTransformerPolicy(configuration, endpointResolver, second);
+    String target = "https://shared-limiter.example.com";
+
+    assertThat(
+      second.concurrencyLimiter(new ResolvedEndpoint(target, null, "b", "m"))
+    ).isSameAs(
+      first.concurrencyLimiter(new ResolvedEndpoint(target, null, "a", "gpt"))
+    );
+  }
+
   private PolicyResult execute(AiRequestTransformerPolicy policy, String body) {
+    return execute(policy, Flowable.just(Buffer.buffer(body)));
+  }
+
+  private PolicyResult execute(
+    AiRequestTransformerPolicy policy,
+    Flowable<Buffer> chunks
+  ) {
     AtomicReference<Buffer> transformedBodyRef = new AtomicReference<>();
     lenient()
-      .when(request.onBody(any()))
-      .thenAnswer(invocation -> {
+      .doAnswer(invocation -> {
         @SuppressWarnings("unchecked")
-        MaybeTransformer<Buffer, Buffer> transformer = invocation.getArgument(
-          0
-        );
+        FlowableTransformer<Buffer, Buffer> transformer =
+          invocation.getArgument(0);
 
-        return Maybe.wrap(transformer.apply(Maybe.just(Buffer.buffer(body))))
+        return Flowable.fromPublisher(transformer.apply(chunks))
+          .reduce(Buffer.buffer(), Buffer::appendBuffer)
           .doOnSuccess(transformedBodyRef::set)
           .ignoreElement();
-      });
+      })
+      .when(request)
+      .onChunks(any());
 
     TestObserver<Void> observer = policy.onRequest(ctx).test();
     observer.awaitDone(5, TimeUnit.SECONDS);
 
     if (transformedBodyRef.get() == null) {
-      transformedBodyRef.set(Buffer.buffer(body));
+      transformedBodyRef.set(
+        chunks.reduce(Buffer.buffer(), Buffer::appendBuffer).blockingGet()
+      );
     }
 
     return new PolicyResult(observer, transformedBodyRef.get());
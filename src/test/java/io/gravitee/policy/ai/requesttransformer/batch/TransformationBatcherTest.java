@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.gravitee.policy.ai.requesttransformer.llm.ResolvedEndpoint;
+import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class TransformationBatcherTest {
+
+  private static final ResolvedEndpoint ENDPOINT = new ResolvedEndpoint(
+    "https://llm.example.com",
+    null,
+    null,
+    "gpt"
+  );
+
+  private final TransformerLlmClient llmClient = mock(
+    TransformerLlmClient.class
+  );
+  private final TestScheduler scheduler = new TestScheduler();
+
+  @Test
+  void shouldSendFullBatchAsOneCallAndSplitTheAnswer() {
+    when(
+      llmClient.transform(
+        eq(ENDPOINT),
+        startsWith(TransformationBatcher.BATCH_INSTRUCTIONS),
+        eq("{\"0\":\"a\",\"1\":\"b\"}"),
+        eq(1000),
+        eq(true)
+      )
+    ).thenReturn(Maybe.just("{\"0\":\"A\",\"1\":\"B\"}"));
+    TransformationBatcher batcher = new TransformationBatcher(
+      llmClient,
+      2,
+      50,
+      scheduler
+    );
+
+    TestObserver<String> first = batcher
+      .transform(ENDPOINT, "upper", "a", 1000, false)
+      .test();
+    TestObserver<String> second = batcher
+      .transform(ENDPOINT, "upper", "b", 1000, false)
+      .test();
+
+    first.assertValue("A");
+    second.assertValue("B");
+    assertThat(batcher.openBatchCount()).isZero();
+    verify(llmClient, never()).transform(
+      any(),
+      eq("upper"),
+      anyString(),
+      anyInt(),
+      anyBoolean()
+    );
+  }
+
+  @Test
+  void shouldSendLoneItemIndividuallyWhenWindowElapses() {
+    // The window already used 50ms of the item's 1000ms deadline.
+    when(llmClient.transform(ENDPOINT, "upper", "a", 950, false)).thenReturn(
+      Maybe.just("A")
+    );
+    TransformationBatcher batcher = new TransformationBatcher(
+      llmClient,
+      8,
+      50,
+      scheduler
+    );
+
+    TestObserver<String> observer = batcher
+      .transform(ENDPOINT, "upper", "a", 1000, false)
+      .test();
+    observer.assertEmpty();
+
+    scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+
+    observer.assertValue("A");
+  }
+
+  @Test
+  void shouldFallBackIndividuallyForMissingItems() {
+    when(
+      llmClient.transform(
+        eq(ENDPOINT),
+        startsWith(TransformationBatcher.BATCH_INSTRUCTIONS),
+        anyString(),
+        eq(950),
+        eq(true)
+      )
+    ).thenReturn(Maybe.just("{\"0\":\"A\"}"));
+    when(llmClient.transform(ENDPOINT, "upper", "b", 950, false)).thenReturn(
+      Maybe.just("B")
+    );
+    TransformationBatcher batcher = new TransformationBatcher(
+      llmClient,
+      8,
+      50,
+      scheduler
+    );
+
+    TestObserver<String> first = batcher
+      .transform(ENDPOINT, "upper", "a", 1000, false)
+      .test();
+    TestObserver<String> second = batcher
+      .transform(ENDPOINT, "upper", "b", 1000, false)
+      .test();
+    scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+
+    first.assertValue("A");
+    second.assertValue("B");
+  }
+
+  @Test
+  void shouldTimeOutItemWhoseDeadlineExpiresWhileBatched() {
+    TransformationBatcher batcher = new TransformationBatcher(
+      llmClient,
+      8,
+      50,
+      scheduler
+    );
+
+    TestObserver<String> observer = batcher
+      .transform(ENDPOINT, "upper", "a", 40, false)
+      .test();
+    scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+
+    observer.assertError(TimeoutException.class);
+    verify(llmClient, never()).transform(
+      any(),
+      anyString(),
+      anyString(),
+      anyInt(),
+      anyBoolean()
+    );
+  }
+
+  @Test
+  void shouldFailEveryItemWhenBatchCallFails() {
+    when(
+      llmClient.transform(
+        eq(ENDPOINT),
+        startsWith(TransformationBatcher.BATCH_INSTRUCTIONS),
+        anyString(),
+        eq(1000),
+        eq(true)
+      )
+    ).thenReturn(Maybe.error(new IllegalStateException("boom")));
+    TransformationBatcher batcher = new TransformationBatcher(
+      llmClient,
+      2,
+      50,
+      scheduler
+    );
+
+    TestObserver<String> first = batcher
+      .transform(ENDPOINT, "upper", "a", 1000, false)
+      .test();
+    TestObserver<String> second = batcher
+      .transform(ENDPOINT, "upper", "b", 1000, false)
+      .test();
+
+    first.assertError(IllegalStateException.class);
+    second.assertError(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldKeepBatchesWithDifferentPromptsApart() {
+    when(
+      llmClient.transform(any(), anyString(), anyString(), anyInt(), eq(false))
+    ).thenAnswer(invocation ->
+      Maybe.just(
+        invocation.<String>getArgument(1) + invocation.getArgument(2)
+      )
+    );
+    TransformationBatcher batcher = new TransformationBatcher(
+      llmClient,
+      2,
+      50,
+      scheduler
+    );
+
+    TestObserver<String> first = batcher
+      .transform(ENDPOINT, "upper", "a", 1000, false)
+      .test();
+    TestObserver<String> second = batcher
+      .transform(ENDPOINT, "lower", "b", 1000, false)
+      .test();
+    assertThat(batcher.openBatchCount()).isEqualTo(2);
+
+    scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+
+    first.assertValue("uppera");
+    second.assertValue("lowerb");
+  }
+}
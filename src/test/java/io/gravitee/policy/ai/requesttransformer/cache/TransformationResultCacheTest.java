@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TransformationResultCacheTest {
+
+  @Test
+  void shouldEvictLeastRecentlyUsedEntryWhenFull() {
+    TransformationResultCache cache = new TransformationResultCache(2, 0, 0);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.get("a");
+    cache.put("c", "3");
+
+    assertThat(cache.get("a")).isEqualTo("1");
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("c")).isEqualTo("3");
+  }
+
+  @Test
+  void shouldBoundCachedOutputsByTotalSize() {
+    TransformationResultCache cache = new TransformationResultCache(10, 8, 0);
+    cache.put("a", "1234");
+    cache.put("b", "5678");
+    cache.put("c", "90");
+    cache.put("too-large", "123456789");
+
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.get("too-large")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.sizeInBytes()).isEqualTo(6);
+  }
+
+  @Test
+  void shouldExpireEntriesAfterTtl() throws InterruptedException {
+    TransformationResultCache cache = new TransformationResultCache(10, 0, 1);
+    cache.put("a", "1");
+    Thread.sleep(5);
+
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void shouldKeepKeyPartsApart() {
+    assertThat(TransformationResultCache.key("ab", "c")).isNotEqualTo(
+      TransformationResultCache.key("a", "bc")
+    );
+    assertThat(TransformationResultCache.key("a", null)).isNotEqualTo(
+      TransformationResultCache.key("a", "")
+    );
+  }
+}
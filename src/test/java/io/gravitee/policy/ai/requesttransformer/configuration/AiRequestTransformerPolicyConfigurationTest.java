@@ -32,7 +32,22 @@ class AiRequestTransformerPolicyConfigurationTest {
       1024 * 1024
     );
     assertThat(configuration.getLlmTimeoutMs()).isEqualTo(30000);
+    assertThat(configuration.getEndpointCacheTtlMs()).isEqualTo(60000);
+    assertThat(configuration.getLoadBalancing()).isEqualTo(
+      AiRequestTransformerPolicyConfiguration.LoadBalancing.WEIGHTED_ROUND_ROBIN
+    );
     assertThat(configuration.getLlmSourceMode()).isNull();
+    assertThat(configuration.isStreamLlmResponse()).isFalse();
+    assertThat(configuration.getResultCache().isEnabled()).isFalse();
+    assertThat(configuration.getResultCache().getMaxEntries()).isEqualTo(1000);
+    assertThat(configuration.getFanOut().isEnabled()).isFalse();
+    assertThat(configuration.getFanOut().getMaxConcurrency()).isEqualTo(4);
+    assertThat(configuration.getBatching().isEnabled()).isFalse();
+    assertThat(configuration.getBatching().getMaxBatchSize()).isEqualTo(8);
+    assertThat(configuration.getCircuitBreaker().isEnabled()).isFalse();
+    assertThat(
+      configuration.getCircuitBreaker().getFailureRateThreshold()
+    ).isEqualTo(50);
     assertThat(configuration.getLlm()).isNotNull();
     assertThat(configuration.getLlm().getAuthType()).isEqualTo(
       AiRequestTransformerPolicyConfiguration.AuthType.NONE
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.gravitee.gateway.reactive.api.context.http.HttpPlainExecutionContext;
+import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class ApiDefinitionBridgeTest {
+
+  private static final String PROXY_API_ID = "llm-proxy-api";
+
+  @Test
+  void shouldCopyOnlyLlmProxyEndpointGroups() {
+    ApiDefinitionBridge bridge = bridge();
+    FakeApi definition = new FakeApi(
+      List.of(
+        new FakeEndpointGroup(
+          "http-proxy",
+          List.of(new FakeEndpoint("{\"target\":\"https://backend\"}")),
+          null
+        ),
+        new FakeEndpointGroup(
+          "llm-proxy",
+          List.of(
+            new FakeEndpoint(
+              "{\"target\":\"https://llm.example.com/v1\",\"model\":\"m\"}"
+            )
+          ),
+          "{\"authentication\":{\"type\":\"BEARER\",\"token\":\"t\"}}"
+        )
+      )
+    );
+
+    JsonNode node = bridge.llmProxyEndpointGroups(definition);
+
+    assertThat(node.path("endpointGroups").size()).isEqualTo(1);
+    JsonNode group = node.path("endpointGroups").get(0);
+    assertThat(group.path("type").asText()).isEqualTo("llm-proxy");
+    assertThat(
+      group.at("/endpoints/0/configuration/target").asText()
+    ).isEqualTo("https://llm.example.com/v1");
+    assertThat(
+      group.at("/sharedConfiguration/authentication/token").asText()
+    ).isEqualTo("t");
+  }
+
+  @Test
+  void shouldReadDeployedDefinitionThroughApiManager() {
+    FakeApiManager apiManager = new FakeApiManager();
+    FakeApi definition = new FakeApi(List.of());
+    apiManager.deploy(PROXY_API_ID, definition);
+
+    HttpPlainExecutionContext ctx = context(apiManager);
+    ApiDefinitionBridge bridge = bridge();
+
+    assertThat(bridge.deployedDefinition(ctx, PROXY_API_ID)).isSameAs(
+      definition
+    );
+    assertThat(bridge.deployedDefinition(ctx, "unknown")).isNull();
+  }
+
+  @Test
+  void shouldInvalidateCachedEndpointWhenLlmProxyApiIsRedeployed() {
+    FakeApiManager apiManager = new FakeApiManager();
+    apiManager.deploy(PROXY_API_ID, llmProxyApi("https://first.example.com"));
+
+    HttpPlainExecutionContext ctx = context(apiManager);
+    EndpointGroupResolver resolver = new EndpointGroupResolver(bridge());
+    AiRequestTransformerPolicyConfiguration configuration =
+      new AiRequestTransformerPolicyConfiguration();
+    configuration.setLlmSourceMode(
+      AiRequestTransformerPolicyConfiguration.LlmSourceMode.LLM_PROXY_API
+    );
+    configuration.setLlmProxyApiId(PROXY_API_ID);
+
+    ResolvedEndpoint first = resolver.resolve(ctx, configuration).blockingGet();
+    assertThat(resolver.resolve(ctx, configuration).blockingGet()).isSameAs(
+      first
+    );
+
+    apiManager.deploy(PROXY_API_ID, llmProxyApi("https://second.example.com"));
+    ResolvedEndpoint redeployed = resolver
+      .resolve(ctx, configuration)
+      .blockingGet();
+
+    assertThat(first.target()).isEqualTo("https://first.example.com");
+    assertThat(redeployed.target()).isEqualTo("https://second.example.com");
+  }
+
+  @Test
+  void shouldSpreadCallsAcrossAllLlmProxyEndpoints() {
+    FakeApiManager apiManager = new FakeApiManager();
+    apiManager.deploy(
+      PROXY_API_ID,
+      new FakeApi(
+        List.of(
+          new FakeEndpointGroup(
+            "llm-proxy",
+            List.of(
+              new FakeEndpoint("{\"target\":\"https://a.example.com\"}"),
+              new FakeEndpoint("{\"target\":\"https://b.example.com\"}")
+            ),
+            null
+          )
+        )
+      )
+    );
+
+    HttpPlainExecutionContext ctx = context(apiManager);
+    EndpointGroupResolver resolver = new EndpointGroupResolver(bridge());
+    AiRequestTransformerPolicyConfiguration configuration =
+      new AiRequestTransformerPolicyConfiguration();
+    configuration.setLlmSourceMode(
+      AiRequestTransformerPolicyConfiguration.LlmSourceMode.LLM_PROXY_API
+    );
+    configuration.setLlmProxyApiId(PROXY_API_ID);
+
+    assertThat(
+      resolver.resolvePool(ctx, configuration).blockingGet().endpoints()
+    ).hasSize(2);
+    assertThat(
+      List.of(
+        resolver.resolve(ctx, configuration).blockingGet().target(),
+        resolver.resolve(ctx, configuration).blockingGet().target()
+      )
+    ).containsExactlyInAnyOrder(
+      "https://a.example.com",
+      "https://b.example.com"
+    );
+  }
+
+  private static ApiDefinitionBridge bridge() {
+    return new ApiDefinitionBridge(
+      FakeApiManager.class.getName(),
+      List.of(FakeApi.class.getName())
+    );
+  }
+
+  private static HttpPlainExecutionContext context(FakeApiManager apiManager) {
+    HttpPlainExecutionContext ctx = Mockito.mock(
+      HttpPlainExecutionContext.class
+    );
+    when(ctx.getComponent(FakeApiManager.class)).thenReturn(apiManager);
+    return ctx;
+  }
+
+  private static FakeApi llmProxyApi(String target) {
+    return new FakeApi(
+      List.of(
+        new FakeEndpointGroup(
+          "llm-proxy",
+          List.of(new FakeEndpoint("{\"target\":\"" + target + "\"}")),
+          null
+        )
+      )
+    );
+  }
+
+  public static class FakeApiManager {
+
+    private final Map<String, FakeReactableApi> apis = new HashMap<>();
+
+    public void deploy(String id, FakeApi definition) {
+      apis.put(id, new FakeReactableApi(definition));
+    }
+
+    public FakeReactableApi get(String id) {
+      return apis.get(id);
+    }
+  }
+
+  public static class FakeReactableApi {
+
+    private final FakeApi definition;
+
+    FakeReactableApi(FakeApi definition) {
+      this.definition = definition;
+    }
+
+    public FakeApi getDefinition() {
+      return definition;
+    }
+  }
+
+  public record FakeApi(List<FakeEndpointGroup> endpointGroups) {}
+
+  public record FakeEndpointGroup(
+    String type,
+    List<FakeEndpoint> endpoints,
+    String sharedConfiguration
+  ) {}
+
+  public record FakeEndpoint(String configuration) {}
+}
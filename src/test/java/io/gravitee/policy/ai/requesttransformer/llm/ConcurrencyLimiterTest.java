@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimiterTest {
+
+  private final TestScheduler scheduler = new TestScheduler();
+
+  @Test
+  void shouldQueueCallsOverTheLimitUntilASlotFrees() {
+    ConcurrencyLimiter limiter = limiter(1, 10);
+    MaybeSubject<String> first = MaybeSubject.create();
+    MaybeSubject<String> second = MaybeSubject.create();
+
+    TestObserver<String> firstCall = limiter.limit(first, 1000).test();
+    TestObserver<String> secondCall = limiter.limit(second, 1000).test();
+
+    assertThat(first.hasObservers()).isTrue();
+    assertThat(second.hasObservers()).isFalse();
+    assertThat(limiter.inFlight()).isEqualTo(1);
+    assertThat(limiter.queueDepth()).isEqualTo(1);
+
+    first.onSuccess("a");
+    firstCall.assertValue("a");
+    assertThat(second.hasObservers()).isTrue();
+    assertThat(limiter.queueDepth()).isZero();
+
+    second.onSuccess("b");
+    secondCall.assertValue("b");
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void shouldShedWhenQueueIsFull() {
+    ConcurrencyLimiter limiter = limiter(1, 0);
+
+    limiter.limit(MaybeSubject.<String>create(), 1000).test();
+    limiter
+      .limit(MaybeSubject.<String>create(), 1000)
+      .test()
+      .assertError(ConcurrencyLimiter.LimitExceededException.class);
+  }
+
+  @Test
+  void shouldShedQueuedCallOnceItsDeadlineExpires() {
+    ConcurrencyLimiter limiter = limiter(1, 10);
+    MaybeSubject<String> queued = MaybeSubject.create();
+
+    limiter.limit(MaybeSubject.<String>create(), 1000).test();
+    TestObserver<String> call = limiter.limit(queued, 200).test();
+
+    scheduler.advanceTimeBy(199, TimeUnit.MILLISECONDS);
+    call.assertNotComplete().assertNoErrors();
+
+    scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+    call.assertError(ConcurrencyLimiter.LimitExceededException.class);
+    assertThat(queued.hasObservers()).isFalse();
+    assertThat(limiter.queueDepth()).isZero();
+  }
+
+  @Test
+  void shouldShrinkLimitOnOverloadAndGrowWhileFastAndBusy() {
+    ConcurrencyLimiter limiter = limiter(10, 10);
+
+    MaybeSubject<String> overloaded = MaybeSubject.create();
+    limiter.limit(overloaded, 1000).test();
+    overloaded.onError(new TransformerLlmClient.LlmStatusException(429));
+    assertThat(limiter.currentLimit()).isEqualTo(9);
+
+    MaybeSubject<String> busy = MaybeSubject.create();
+    for (int i = 0; i < 5; i++) {
+      limiter.limit(busy, 1000).test();
+    }
+    scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+    busy.onSuccess("ok");
+
+    assertThat(limiter.currentLimit()).isGreaterThan(9);
+  }
+
+  @Test
+  void shouldLeaveQueueWhenQueuedCallIsCancelled() {
+    ConcurrencyLimiter limiter = limiter(1, 10);
+    MaybeSubject<String> running = MaybeSubject.create();
+    MaybeSubject<String> queued = MaybeSubject.create();
+
+    limiter.limit(running, 1000).test();
+    limiter.limit(queued, 1000).test().dispose();
+    assertThat(limiter.queueDepth()).isZero();
+
+    running.onSuccess("a");
+    assertThat(queued.hasObservers()).isFalse();
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  private ConcurrencyLimiter limiter(int initialLimit, int maxQueueSize) {
+    return new ConcurrencyLimiter(
+      "https://llm.example.com",
+      initialLimit,
+      1,
+      100,
+      maxQueueSize,
+      2.0,
+      scheduler
+    );
+  }
+}
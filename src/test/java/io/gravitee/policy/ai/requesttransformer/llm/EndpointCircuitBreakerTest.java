@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.policy.ai.requesttransformer.llm.EndpointCircuitBreaker.State;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class EndpointCircuitBreakerTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(2000);
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  void shouldOpenOnceFailureRateIsReached() {
+    EndpointCircuitBreaker breaker = breaker();
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(breaker.tryAcquire()).isTrue();
+      breaker.onResult(false, FAST);
+    }
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+
+    breaker.tryAcquire();
+    breaker.onResult(true, FAST);
+    breaker.tryAcquire();
+    breaker.onResult(true, FAST);
+    breaker.tryAcquire();
+    breaker.onResult(true, FAST);
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  @Test
+  void shouldOpenOnceSlowCallRateIsReached() {
+    EndpointCircuitBreaker breaker = breaker();
+
+    for (int i = 0; i < 4; i++) {
+      breaker.tryAcquire();
+      breaker.onResult(false, SLOW);
+    }
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  void shouldCloseAfterSuccessfulHalfOpenProbe() {
+    EndpointCircuitBreaker breaker = openBreaker();
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    assertThat(breaker.tryAcquire()).isTrue();
+    assertThat(breaker.tryAcquire()).isFalse();
+
+    breaker.onResult(false, FAST);
+
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    assertThat(breaker.tryAcquire()).isTrue();
+  }
+
+  @Test
+  void shouldReopenWhenHalfOpenProbeFails() {
+    EndpointCircuitBreaker breaker = openBreaker();
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    assertThat(breaker.tryAcquire()).isTrue();
+    breaker.onResult(true, FAST);
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  @Test
+  void shouldGiveBackProbeOfCancelledCall() {
+    EndpointCircuitBreaker breaker = openBreaker();
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    assertThat(breaker.tryAcquire()).isTrue();
+    breaker.release();
+
+    assertThat(breaker.tryAcquire()).isTrue();
+  }
+
+  private EndpointCircuitBreaker openBreaker() {
+    EndpointCircuitBreaker breaker = breaker();
+    for (int i = 0; i < 4; i++) {
+      breaker.tryAcquire();
+      breaker.onResult(true, FAST);
+    }
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    return breaker;
+  }
+
+  private EndpointCircuitBreaker breaker() {
+    return new EndpointCircuitBreaker(
+      "https://llm.example.com",
+      50,
+      80,
+      1000,
+      4,
+      8,
+      30000,
+      1,
+      now::get
+    );
+  }
+}
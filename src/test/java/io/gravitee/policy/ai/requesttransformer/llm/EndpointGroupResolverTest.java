@@ -47,10 +47,9 @@ class EndpointGroupResolverTest {
     llm.setModel("fallback-model");
     configuration.setLlm(llm);
 
-    ResolvedEndpoint endpoint = resolver.resolve(
-      Mockito.mock(HttpPlainExecutionContext.class),
-      configuration
-    );
+    ResolvedEndpoint endpoint = resolver
+      .resolve(Mockito.mock(HttpPlainExecutionContext.class), configuration)
+      .blockingGet();
 
     assertThat(endpoint).isNotNull();
     assertThat(endpoint.target()).isEqualTo("https://llm.example.com/v1");
@@ -73,10 +72,9 @@ class EndpointGroupResolverTest {
     llm.setEndpoint("https://llm.example.com/v1");
     configuration.setLlm(llm);
 
-    ResolvedEndpoint endpoint = resolver.resolve(
-      Mockito.mock(HttpPlainExecutionContext.class),
-      configuration
-    );
+    ResolvedEndpoint endpoint = resolver
+      .resolve(Mockito.mock(HttpPlainExecutionContext.class), configuration)
+      .blockingGet();
 
     assertThat(endpoint).isNull();
   }
@@ -119,4 +117,32 @@ class EndpointGroupResolverTest {
     assertThat(endpoint.authValue()).isEqualTo("abc123");
     assertThat(endpoint.model()).isEqualTo("proxy-model");
   }
+
+  @Test
+  void shouldReuseResolvedEndpointUntilCacheTtlIsDisabled() {
+    EndpointGroupResolver resolver = new EndpointGroupResolver();
+    HttpPlainExecutionContext ctx = Mockito.mock(
+      HttpPlainExecutionContext.class
+    );
+    AiRequestTransformerPolicyConfiguration configuration =
+      new AiRequestTransformerPolicyConfiguration();
+
+    AiRequestTransformerPolicyConfiguration.Llm llm =
+      new AiRequestTransformerPolicyConfiguration.Llm();
+    llm.setEndpoint("https://first.example.com/v1");
+    configuration.setLlm(llm);
+
+    ResolvedEndpoint first = resolver.resolve(ctx, configuration).blockingGet();
+    llm.setEndpoint("https://second.example.com/v1");
+    ResolvedEndpoint cached = resolver.resolve(ctx, configuration).blockingGet();
+
+    assertThat(cached).isSameAs(first);
+
+    configuration.setEndpointCacheTtlMs(0);
+    ResolvedEndpoint uncached = resolver
+      .resolve(ctx, configuration)
+      .blockingGet();
+
+    assertThat(uncached.target()).isEqualTo("https://second.example.com/v1");
+  }
 }
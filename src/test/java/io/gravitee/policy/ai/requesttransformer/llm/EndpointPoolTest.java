@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.policy.ai.requesttransformer.configuration.AiRequestTransformerPolicyConfiguration.LoadBalancing;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class EndpointPoolTest {
+
+  @Test
+  void shouldFollowEndpointWeightsWithRoundRobin() {
+    ResolvedEndpoint heavy = endpoint("https://wrr-heavy.example.com");
+    ResolvedEndpoint light = endpoint("https://wrr-light.example.com");
+    EndpointPool pool = new EndpointPool(List.of(heavy, light), List.of(3, 1));
+
+    Map<ResolvedEndpoint, Integer> picks = new HashMap<>();
+    for (int i = 0; i < 8; i++) {
+      picks.merge(
+        pool.select(LoadBalancing.WEIGHTED_ROUND_ROBIN),
+        1,
+        Integer::sum
+      );
+    }
+
+    assertThat(picks).containsEntry(heavy, 6).containsEntry(light, 2);
+  }
+
+  @Test
+  void shouldPickEndpointWithFewestCallsInFlight() {
+    ResolvedEndpoint busy = endpoint("https://lor-busy.example.com");
+    ResolvedEndpoint idle = endpoint("https://lor-idle.example.com");
+    EndpointPool pool = new EndpointPool(List.of(busy, idle), List.of(1, 1));
+    EndpointStats.of(busy).onStart();
+    try {
+      for (int i = 0; i < 4; i++) {
+        assertThat(pool.select(LoadBalancing.LEAST_OUTSTANDING)).isEqualTo(
+          idle
+        );
+      }
+    } finally {
+      EndpointStats.of(busy).onEnd();
+    }
+  }
+
+  @Test
+  void shouldPreferFasterEndpointWithLatencyEwma() {
+    ResolvedEndpoint slow = endpoint("https://ewma-slow.example.com");
+    ResolvedEndpoint fast = endpoint("https://ewma-fast.example.com");
+    EndpointPool pool = new EndpointPool(List.of(slow, fast), List.of(1, 1));
+    EndpointStats.of(slow).recordLatency(TimeUnit.MILLISECONDS.toNanos(500));
+    EndpointStats.of(fast).recordLatency(TimeUnit.MILLISECONDS.toNanos(50));
+
+    for (int i = 0; i < 4; i++) {
+      assertThat(pool.select(LoadBalancing.LATENCY_EWMA)).isEqualTo(fast);
+    }
+  }
+
+  @Test
+  void shouldLeaveOutEndpointsWithZeroWeight() {
+    ResolvedEndpoint active = endpoint("https://zero-active.example.com");
+    ResolvedEndpoint drained = endpoint("https://zero-drained.example.com");
+
+    assertThat(
+      new EndpointPool(List.of(active, drained), List.of(1, 0)).endpoints()
+    ).containsExactly(active);
+    assertThat(
+      new EndpointPool(List.of(active, drained), List.of(0, 0)).endpoints()
+    ).containsExactly(active, drained);
+  }
+
+  @Test
+  void shouldSelectAnotherTargetThanThePrimary() {
+    ResolvedEndpoint primary = endpoint("https://other-primary.example.com");
+    ResolvedEndpoint backup = endpoint("https://other-backup.example.com");
+    EndpointPool pool = new EndpointPool(
+      List.of(primary, backup),
+      List.of(5, 1)
+    );
+
+    for (LoadBalancing strategy : LoadBalancing.values()) {
+      assertThat(pool.selectOther(primary, strategy)).isEqualTo(backup);
+    }
+    assertThat(
+      EndpointPool.of(primary).selectOther(
+        primary,
+        LoadBalancing.WEIGHTED_ROUND_ROBIN
+      )
+    ).isNull();
+  }
+
+  @Test
+  void shouldCarryPoolWithSelectedEndpoint() {
+    ResolvedEndpoint first = endpoint("https://carry-first.example.com");
+    ResolvedEndpoint second = endpoint("https://carry-second.example.com");
+    EndpointPool pool = new EndpointPool(List.of(first, second), List.of(1, 1));
+    EndpointPool otherPool = EndpointPool.of(first);
+
+    ResolvedEndpoint selected = pool.select(LoadBalancing.WEIGHTED_ROUND_ROBIN);
+
+    assertThat(selected.pool()).isSameAs(pool);
+    assertThat(first.pool()).isNull();
+    assertThat(
+      otherPool.select(LoadBalancing.WEIGHTED_ROUND_ROBIN).pool()
+    ).isSameAs(otherPool);
+    assertThat(
+      selected.pool().selectOther(selected, LoadBalancing.WEIGHTED_ROUND_ROBIN)
+    ).isNotEqualTo(selected);
+  }
+
+  @Test
+  void shouldKeyStatsByTargetAndEvictIdleTargets() {
+    ResolvedEndpoint endpoint = endpoint("https://stats.example.com");
+
+    assertThat(
+      EndpointStats.of(
+        new ResolvedEndpoint(endpoint.target(), "Authorization", "secret", "m")
+      )
+    ).isSameAs(EndpointStats.of(endpoint));
+
+    for (int i = 0; i < EndpointStats.MAX_TARGETS * 2; i++) {
+      EndpointStats.of(endpoint("https://stats-" + i + ".example.com"));
+    }
+    assertThat(EndpointStats.trackedTargets()).isLessThanOrEqualTo(
+      EndpointStats.MAX_TARGETS
+    );
+  }
+
+  private static ResolvedEndpoint endpoint(String target) {
+    return new ResolvedEndpoint(target, null, null, "m");
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class LlmHttpClientsTest {
+
+  @Test
+  void shouldShareOneClientPerTargetAuthority() {
+    LlmHttpClients clients = new LlmHttpClients(true, 1500, 2);
+
+    HttpClient first = clients.clientFor(
+      URI.create("https://llm.example.com/v1/chat/completions")
+    );
+    HttpClient second = clients.clientFor(
+      URI.create("https://llm.example.com/other/chat/completions")
+    );
+    HttpClient other = clients.clientFor(
+      URI.create("https://llm.example.com:8443/v1/chat/completions")
+    );
+
+    assertThat(second).isSameAs(first);
+    assertThat(other).isNotSameAs(first);
+    assertThat(clients.size()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldConfigureVersionConnectTimeoutAndSharedExecutor() {
+    LlmHttpClients clients = new LlmHttpClients(false, 1500, 2);
+
+    HttpClient first = clients.clientFor(URI.create("http://a.example.com"));
+    HttpClient second = clients.clientFor(URI.create("http://b.example.com"));
+
+    assertThat(first.version()).isEqualTo(HttpClient.Version.HTTP_1_1);
+    assertThat(first.connectTimeout()).contains(Duration.ofMillis(1500));
+    assertThat(first.executor()).isPresent();
+    assertThat(second.executor()).isEqualTo(first.executor());
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpServer;
+import io.gravitee.policy.ai.requesttransformer.llm.ManagementApiLookup.CircuitState;
+import io.gravitee.policy.ai.requesttransformer.llm.ManagementApiLookup.Lookup;
+import io.gravitee.policy.ai.requesttransformer.llm.ManagementApiLookup.Outcome;
+import io.reactivex.rxjava3.core.Single;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ManagementApiLookupTest {
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private HttpServer server;
+
+  @AfterEach
+  void tearDown() {
+    if (server != null) {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void shouldCoalesceConcurrentLookupsOfTheSameId() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    ManagementApiLookup lookup = lookup(200, "{\"id\":\"api\"}", release);
+
+    List<Lookup> results = Single.merge(
+      List.of(lookup.lookup("api"), lookup.lookup("api"), lookup.lookup("api"))
+    )
+      .doOnSubscribe(s -> release.countDown())
+      .toList()
+      .blockingGet();
+
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(results)
+      .extracting(Lookup::outcome)
+      .containsExactlyInAnyOrder(
+        Outcome.FETCHED,
+        Outcome.COALESCED,
+        Outcome.COALESCED
+      );
+    assertThat(results).allMatch(result ->
+      "api".equals(result.api().path("id").asText())
+    );
+  }
+
+  @Test
+  void shouldNegativelyCacheNotFoundLookups() throws Exception {
+    ManagementApiLookup lookup = lookup(404, "{}", null);
+
+    assertThat(lookup.lookup("missing").blockingGet().outcome()).isEqualTo(
+      Outcome.NOT_FOUND
+    );
+    assertThat(lookup.lookup("missing").blockingGet().outcome()).isEqualTo(
+      Outcome.NEGATIVE_CACHE
+    );
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(lookup.circuitState()).isEqualTo(CircuitState.CLOSED);
+  }
+
+  @Test
+  void shouldOpenCircuitAfterConsecutiveFailures() throws Exception {
+    ManagementApiLookup lookup = lookup(500, "{}", null);
+
+    assertThat(lookup.lookup("a").blockingGet().outcome()).isEqualTo(
+      Outcome.FAILED
+    );
+    assertThat(lookup.lookup("b").blockingGet().outcome()).isEqualTo(
+      Outcome.FAILED
+    );
+    assertThat(lookup.lookup("c").blockingGet().outcome()).isEqualTo(
+      Outcome.CIRCUIT_OPEN
+    );
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(lookup.circuitState()).isEqualTo(CircuitState.OPEN);
+  }
+
+  private ManagementApiLookup lookup(
+    int status,
+    String body,
+    CountDownLatch release
+  ) throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      calls.incrementAndGet();
+      try {
+        if (release != null) {
+          release.await(5, TimeUnit.SECONDS);
+          // Give the other subscribers time to join the pending call.
+          Thread.sleep(100);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(status, bytes.length);
+      exchange.getResponseBody().write(bytes);
+      exchange.close();
+    });
+    server.start();
+    return new ManagementApiLookup(
+      "http://127.0.0.1:" + server.getAddress().getPort(),
+      "admin:admin",
+      60000,
+      2,
+      60000
+    );
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.plugins.RxJavaPlugins;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RequestHedgerTest {
+
+  private final TestScheduler scheduler = new TestScheduler();
+
+  @Test
+  void shouldNotHedgeCallsFasterThanTheDelay() {
+    RequestHedger hedger = new RequestHedger(100, 95, 1, scheduler);
+    MaybeSubject<String> backup = MaybeSubject.create();
+
+    TestObserver<String> observer = hedger
+      .hedge(Maybe.just("primary"), backup)
+      .test();
+    scheduler.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+
+    observer.assertValue("primary");
+    assertThat(backup.hasObservers()).isFalse();
+    assertThat(hedger.hedgeCount()).isZero();
+  }
+
+  @Test
+  void shouldTakeFirstSuccessAndCancelTheSlowCall() {
+    RequestHedger hedger = new RequestHedger(100, 95, 1, scheduler);
+    MaybeSubject<String> primary = MaybeSubject.create();
+    MaybeSubject<String> backup = MaybeSubject.create();
+
+    TestObserver<String> observer = hedger.hedge(primary, backup).test();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+    assertThat(backup.hasObservers()).isTrue();
+
+    backup.onSuccess("backup");
+
+    observer.assertValue("backup");
+    assertThat(primary.hasObservers()).isFalse();
+    assertThat(hedger.hedgeCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldWaitForBackupWhenPrimaryFailsAfterHedging() {
+    RequestHedger hedger = new RequestHedger(100, 95, 1, scheduler);
+    MaybeSubject<String> primary = MaybeSubject.create();
+    MaybeSubject<String> backup = MaybeSubject.create();
+
+    List<Throwable> undeliverable = new CopyOnWriteArrayList<>();
+    RxJavaPlugins.setErrorHandler(undeliverable::add);
+    try {
+      TestObserver<String> observer = hedger.hedge(primary, backup).test();
+      scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+      primary.onError(new IllegalStateException("boom"));
+      observer.assertNotComplete().assertNoErrors();
+
+      backup.onSuccess("backup");
+
+      observer.assertValue("backup");
+      assertThat(undeliverable).isEmpty();
+    } finally {
+      RxJavaPlugins.reset();
+    }
+  }
+
+  @Test
+  void shouldReportFirstFailureWhenBothCallsFail() {
+    RequestHedger hedger = new RequestHedger(100, 95, 1, scheduler);
+    MaybeSubject<String> primary = MaybeSubject.create();
+    MaybeSubject<String> backup = MaybeSubject.create();
+    IllegalStateException first = new IllegalStateException("first");
+
+    TestObserver<String> observer = hedger.hedge(primary, backup).test();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+    backup.onError(first);
+    observer.assertNotComplete();
+    primary.onError(new IllegalStateException("second"));
+
+    observer.assertError(first);
+  }
+
+  @Test
+  void shouldCapHedgesWithTheBudget() {
+    RequestHedger hedger = new RequestHedger(100, 95, 0.5, scheduler);
+
+    for (int i = 0; i < 4; i++) {
+      hedger.hedge(Maybe.<String>never(), Maybe.<String>never()).test();
+    }
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    assertThat(hedger.hedgeCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldDeriveDelayFromLatencyPercentile() {
+    RequestHedger hedger = new RequestHedger(0, 95, 0.1, scheduler);
+    assertThat(hedger.delayMs()).isEqualTo(-1);
+
+    for (int i = 0; i < RequestHedger.MIN_SAMPLES; i++) {
+      hedger.hedge(Maybe.just("ok"), Maybe.just("backup")).test();
+    }
+
+    assertThat(hedger.delayMs()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.policy.ai.requesttransformer.llm.TransformerLlmClient.LlmStatusException;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class RetryPolicyTest {
+
+  private final TestScheduler scheduler = new TestScheduler();
+  private final AtomicInteger attempts = new AtomicInteger();
+
+  @Test
+  void shouldRetryTransientFailuresWithBackoff() {
+    RetryPolicy policy = policy(3, 1);
+    Maybe<String> call = failingTimes(2, new LlmStatusException(503));
+
+    TestObserver<String> observer = policy.retry(call, 30000).test();
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    observer.assertValue("ok");
+    assertThat(attempts).hasValue(3);
+    assertThat(policy.retryCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldRetryConnectionErrors() {
+    RetryPolicy policy = policy(2, 1);
+
+    TestObserver<String> observer = policy
+      .retry(failingTimes(1, new ConnectException("refused")), 30000)
+      .test();
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    observer.assertValue("ok");
+  }
+
+  @Test
+  void shouldNotRetryNonTransientStatus() {
+    RetryPolicy policy = policy(3, 1);
+
+    policy
+      .retry(failingTimes(1, new LlmStatusException(400)), 30000)
+      .test()
+      .assertError(LlmStatusException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void shouldWaitForRetryAfter() {
+    RetryPolicy policy = policy(2, 1);
+
+    TestObserver<String> observer = policy
+      .retry(failingTimes(1, new LlmStatusException(429, 2000)), 30000)
+      .test();
+
+    scheduler.advanceTimeBy(1999, TimeUnit.MILLISECONDS);
+    assertThat(attempts).hasValue(1);
+    scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+    observer.assertValue("ok");
+  }
+
+  @Test
+  void shouldGiveUpWhenRetryWouldMissTheDeadline() {
+    RetryPolicy policy = policy(3, 1);
+
+    policy
+      .retry(failingTimes(1, new LlmStatusException(429, 5000)), 1000)
+      .test()
+      .assertError(LlmStatusException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void shouldStopRetryingOnceRetryBudgetIsSpent() {
+    RetryPolicy policy = policy(2, 0);
+
+    for (int i = 0; i < 10; i++) {
+      policy
+        .retry(Maybe.<String>error(new LlmStatusException(503)), 30000)
+        .test();
+    }
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    assertThat(policy.retryCount()).isEqualTo(10);
+
+    policy
+      .retry(failingTimes(1, new LlmStatusException(503)), 30000)
+      .test()
+      .assertError(LlmStatusException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void shouldParseRetryAfterHeader() {
+    assertThat(RetryPolicy.retryAfterMs("2")).isEqualTo(2000);
+    assertThat(
+      RetryPolicy.retryAfterMs("Thu, 01 Jan 1970 00:00:00 GMT")
+    ).isZero();
+    assertThat(RetryPolicy.retryAfterMs("soon")).isEqualTo(-1);
+    assertThat(RetryPolicy.retryAfterMs(null)).isEqualTo(-1);
+  }
+
+  private Maybe<String> failingTimes(int failures, Throwable error) {
+    return Maybe.defer(() ->
+      attempts.incrementAndGet() <= failures
+        ? Maybe.error(error)
+        : Maybe.just("ok")
+    );
+  }
+
+  private RetryPolicy policy(int maxAttempts, double maxRetryRatio) {
+    return new RetryPolicy(maxAttempts, 100, 200, maxRetryRatio, scheduler);
+  }
+}
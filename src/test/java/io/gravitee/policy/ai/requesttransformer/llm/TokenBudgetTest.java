@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBudgetTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  void shouldEstimateInputAndMatchingOutput() {
+    TokenBudget budget = budget(600);
+
+    assertThat(budget.estimate("12345678", "1234")).isEqualTo(4);
+    assertThat(budget.estimate(null, null)).isEqualTo(1);
+  }
+
+  @Test
+  void shouldRejectChargesOverBudgetUntilRefilled() {
+    TokenBudget budget = budget(600);
+
+    assertThat(budget.tryCharge(500)).isTrue();
+    assertThat(budget.tryCharge(200)).isFalse();
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertThat(budget.available()).isEqualTo(200);
+    assertThat(budget.tryCharge(200)).isTrue();
+  }
+
+  @Test
+  void shouldSettleEstimateAgainstReportedUsage() {
+    TokenBudget budget = budget(600);
+
+    budget.tryCharge(100);
+    budget.settle(100, 40);
+    assertThat(budget.available()).isEqualTo(560);
+
+    budget.tryCharge(100);
+    budget.settle(100, 700);
+    assertThat(budget.available()).isEqualTo(-140);
+    assertThat(budget.tryCharge(1)).isFalse();
+  }
+
+  @Test
+  void shouldLetOversizedCallThroughOnceBucketIsFull() {
+    TokenBudget budget = budget(600);
+
+    assertThat(budget.tryCharge(1000)).isTrue();
+    assertThat(budget.tryCharge(1000)).isFalse();
+
+    now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    assertThat(budget.tryCharge(1000)).isTrue();
+  }
+
+  private TokenBudget budget(long tokensPerMinute) {
+    return new TokenBudget("llm", tokensPerMinute, 4, now::get);
+  }
+}
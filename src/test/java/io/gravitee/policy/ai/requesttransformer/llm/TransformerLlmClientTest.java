@@ -18,12 +18,35 @@ package io.gravitee.policy.ai.requesttransformer.llm;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.vertx.core.Vertx;
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 class TransformerLlmClientTest {
 
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+  private HttpServer server;
+  private Vertx vertx;
+
+  @AfterEach
+  void tearDown() {
+    if (server != null) {
+      server.stop(0);
+    }
+    if (vertx != null) {
+      vertx.close();
+    }
+  }
+
   @Test
   void shouldNormalizeTargetUrlForChatCompletions() {
     TransformerLlmClient client = new TransformerLlmClient();
@@ -78,6 +101,49 @@ class TransformerLlmClientTest {
     ).isEqualTo("user content");
   }
 
+  @Test
+  void shouldSpliceUserContentIntoPrecompiledPayload() throws Exception {
+    TransformerLlmClient client = new TransformerLlmClient();
+    ResolvedEndpoint endpoint = new ResolvedEndpoint(
+      "https://llm.example.com/v1",
+      "Authorization",
+      "Bearer t",
+      "gpt-4o-mini"
+    );
+    String userContent = "{\"quote\":\"\\\"é\\\"\"}\n\u0001";
+
+    ChatCompletionTemplate template = client.requestTemplate(
+      endpoint,
+      "system prompt",
+      true,
+      false
+    );
+
+    assertThat(
+      client.requestTemplate(endpoint, "system prompt", true, false)
+    ).isSameAs(template);
+    assertThat(
+      new ObjectMapper().readTree(template.body(userContent))
+    ).isEqualTo(
+      client.buildChatCompletionPayload(
+        "gpt-4o-mini",
+        "system prompt",
+        userContent,
+        true
+      )
+    );
+    HttpRequest request = template.request(userContent, 1000);
+    assertThat(request.uri()).hasToString(
+      "https://llm.example.com/v1/chat/completions"
+    );
+    assertThat(request.headers().firstValue("Authorization")).contains(
+      "Bearer t"
+    );
+    assertThat(request.bodyPublisher().orElseThrow().contentLength()).isEqualTo(
+      template.body(userContent).length
+    );
+  }
+
   @Test
   void shouldExtractAssistantContentFromChoicesOrOutputText() throws Exception {
     TransformerLlmClient client = new TransformerLlmClient();
@@ -110,4 +176,559 @@ class TransformerLlmClientTest {
       "from-output-text"
     );
   }
+
+  @Test
+  void shouldTransformAsynchronouslyAgainstChatCompletionsEndpoint()
+    throws Exception {
+    String baseUrl = startServer(
+      200,
+      """
+      {"choices":[{"message":{"content":"from-server"}}]}
+      """
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+
+    client
+      .transform(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("from-server");
+  }
+
+  @Test
+  void shouldTransformThroughVertxWhenAvailable() throws Exception {
+    String baseUrl = startServer(
+      200,
+      """
+      {"choices":[{"message":{"content":"from-vertx"}}]}
+      """
+    );
+    vertx = Vertx.vertx();
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.useVertx(vertx);
+
+    assertThat(client.usesVertx()).isTrue();
+    client
+      .transform(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("from-vertx");
+  }
+
+  @Test
+  void shouldSignalErrorOnNonSuccessStatusThroughVertx() throws Exception {
+    String baseUrl = startServer(503, "{}");
+    vertx = Vertx.vertx();
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.useVertx(vertx);
+
+    client
+      .transform(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertError(
+        error ->
+          error instanceof IllegalStateException &&
+          error.getMessage().contains("503")
+      );
+  }
+
+  @Test
+  void shouldSignalErrorOnNonSuccessStatus() throws Exception {
+    String baseUrl = startServer(503, "{}");
+    TransformerLlmClient client = new TransformerLlmClient();
+
+    client
+      .transform(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertError(
+        e ->
+          e instanceof IllegalStateException &&
+          e.getMessage().contains("status 503")
+      );
+  }
+
+  @Test
+  void shouldFailFastOnceEndpointCircuitIsOpen() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    String baseUrl = startServer(503, "{}", new CountDownLatch(0), calls);
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.setCircuitBreakers(endpoint ->
+      new EndpointCircuitBreaker(endpoint.target(), 50, 100, 0, 2, 2, 60000, 1)
+    );
+    ResolvedEndpoint endpoint = new ResolvedEndpoint(
+      baseUrl,
+      null,
+      null,
+      "gpt"
+    );
+
+    for (int i = 0; i < 2; i++) {
+      client
+        .transform(endpoint, "prompt", "input " + i, 5000)
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertError(IllegalStateException.class);
+    }
+    client
+      .transform(endpoint, "prompt", "input", 5000)
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertError(EndpointCircuitBreaker.CircuitOpenException.class);
+
+    assertThat(calls).hasValue(2);
+    assertThat(client.circuitBreaker(endpoint).state()).isEqualTo(
+      EndpointCircuitBreaker.State.OPEN
+    );
+  }
+
+  @Test
+  void shouldNotOpenCircuitOnClientErrors() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    String baseUrl = startServer(400, "{}", new CountDownLatch(0), calls);
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.setCircuitBreakers(endpoint ->
+      new EndpointCircuitBreaker(endpoint.target(), 50, 100, 0, 2, 2, 60000, 1)
+    );
+    ResolvedEndpoint endpoint = new ResolvedEndpoint(
+      baseUrl,
+      null,
+      null,
+      "gpt"
+    );
+
+    for (int i = 0; i < 3; i++) {
+      client
+        .transform(endpoint, "prompt", "input " + i, 5000)
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertError(TransformerLlmClient.LlmStatusException.class);
+    }
+
+    assertThat(calls).hasValue(3);
+    assertThat(client.circuitBreaker(endpoint).state()).isEqualTo(
+      EndpointCircuitBreaker.State.CLOSED
+    );
+  }
+
+  @Test
+  void shouldSendHedgedBackupToAnotherEndpoint() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger primaryCalls = new AtomicInteger();
+    AtomicInteger backupCalls = new AtomicInteger();
+    String primaryUrl = startServer(
+      200,
+      "{\"choices\":[{\"message\":{\"content\":\"primary\"}}]}",
+      release,
+      primaryCalls
+    );
+    HttpServer primaryServer = server;
+    String backupUrl = startServer(
+      200,
+      "{\"choices\":[{\"message\":{\"content\":\"backup\"}}]}",
+      new CountDownLatch(0),
+      backupCalls
+    );
+    ResolvedEndpoint backup = new ResolvedEndpoint(
+      backupUrl,
+      null,
+      null,
+      "gpt"
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.setHedger(new RequestHedger(50, 95, 1));
+    client.setBackupSelector(primary -> backup);
+
+    try {
+      client
+        .transform(
+          new ResolvedEndpoint(primaryUrl, null, null, "gpt"),
+          "prompt",
+          "input",
+          5000
+        )
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertValue("backup");
+    } finally {
+      release.countDown();
+      primaryServer.stop(0);
+    }
+    assertThat(primaryCalls).hasValue(1);
+    assertThat(backupCalls).hasValue(1);
+  }
+
+  @Test
+  void shouldShedCallsOnceReportedUsageExhaustsTokenBudget() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    String baseUrl = startServer(
+      200,
+      "{\"choices\":[{\"message\":{\"content\":\"ok\"}}],\"usage\":{\"total_tokens\":50}}",
+      new CountDownLatch(0),
+      calls
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.setTokenBudgets(endpoint ->
+      new TokenBudget(endpoint.target(), 20, 4)
+    );
+    ResolvedEndpoint endpoint = new ResolvedEndpoint(
+      baseUrl,
+      null,
+      null,
+      "gpt"
+    );
+
+    client
+      .transform(endpoint, "prompt", "first", 5000)
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("ok");
+    assertThat(client.tokenBudget(endpoint).available()).isNegative();
+
+    client
+      .transform(endpoint, "prompt", "second", 5000)
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertError(TokenBudget.BudgetExceededException.class);
+    assertThat(calls).hasValue(1);
+  }
+
+  @Test
+  void shouldChargeTokenBudgetForEveryAttempt() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      boolean first = calls.incrementAndGet() == 1;
+      byte[] bytes = (first
+          ? "{}"
+          : "{\"choices\":[{\"message\":{\"content\":\"ok\"}}],\"usage\":{\"total_tokens\":10}}").getBytes(
+          StandardCharsets.UTF_8
+        );
+      if (first) {
+        exchange.getResponseHeaders().add("Retry-After", "0");
+      }
+      exchange.sendResponseHeaders(first ? 503 : 200, bytes.length);
+      exchange.getResponseBody().write(bytes);
+      exchange.close();
+    });
+    server.start();
+    String baseUrl =
+      "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    TokenBudget budget = new TokenBudget("attempts", 1000, 4, () -> 0L);
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.setTokenBudgets(endpoint -> budget);
+    client.setRetryPolicies(endpoint -> new RetryPolicy(3, 50, 200, 0.2));
+
+    client
+      .transform(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("ok");
+
+    // The failed attempt keeps its estimate, the retry is settled at 10.
+    assertThat(calls).hasValue(2);
+    assertThat(budget.available()).isEqualTo(
+      1000 - budget.estimate("prompt", "input") - 10
+    );
+  }
+
+  @Test
+  void shouldRetryUnavailableEndpointWithinTimeout() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      boolean first = calls.incrementAndGet() == 1;
+      byte[] bytes = (first
+          ? "{}"
+          : "{\"choices\":[{\"message\":{\"content\":\"ok\"}}]}").getBytes(
+          StandardCharsets.UTF_8
+        );
+      if (first) {
+        exchange.getResponseHeaders().add("Retry-After", "0");
+      }
+      exchange.sendResponseHeaders(first ? 503 : 200, bytes.length);
+      exchange.getResponseBody().write(bytes);
+      exchange.close();
+    });
+    server.start();
+    String baseUrl =
+      "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.setRetryPolicies(endpoint -> new RetryPolicy(3, 50, 200, 0.2));
+
+    client
+      .transform(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("ok");
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void shouldShareIdenticalInFlightCallsAcrossWaiters() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    String baseUrl = startServer(
+      200,
+      """
+      {"choices":[{"message":{"content":"shared"}}]}
+      """,
+      release,
+      calls
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+    ResolvedEndpoint endpoint = new ResolvedEndpoint(
+      baseUrl,
+      null,
+      null,
+      "gpt"
+    );
+
+    var leaving = client.transform(endpoint, "prompt", "input", 5000).test();
+    var staying = client.transform(endpoint, "prompt", "input", 5000).test();
+    leaving.dispose();
+    release.countDown();
+
+    staying.awaitDone(5, TimeUnit.SECONDS).assertValue("shared");
+    client
+      .transform(endpoint, "prompt", "input", 5000)
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("shared");
+    assertThat(calls.get()).isEqualTo(2);
+    leaving.assertEmpty();
+  }
+
+  @Test
+  void shouldAbortSharedCallOnlyOnceEveryWaiterLeaves() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    String baseUrl = startServer(
+      200,
+      "{\"choices\":[{\"message\":{\"content\":\"shared\"}}]}",
+      release,
+      new AtomicInteger()
+    );
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(
+      "shared",
+      5,
+      1,
+      10,
+      10,
+      2
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.setConcurrencyLimiters(endpoint -> limiter);
+    ResolvedEndpoint endpoint = new ResolvedEndpoint(
+      baseUrl,
+      null,
+      null,
+      "gpt"
+    );
+
+    try {
+      var first = client.transform(endpoint, "prompt", "input", 5000).test();
+      var second = client.transform(endpoint, "prompt", "input", 5000).test();
+      assertThat(limiter.inFlight()).isEqualTo(1);
+
+      first.dispose();
+      assertThat(limiter.inFlight()).isEqualTo(1);
+
+      second.dispose();
+      assertThat(limiter.inFlight()).isZero();
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  void shouldAccumulateStreamedContentDeltas() throws Exception {
+    String baseUrl = startEventStreamServer(
+      new CountDownLatch(0),
+      "{\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}",
+      "{\"choices\":[{\"delta\":{\"content\":\"hel\"}}]}",
+      "{\"choices\":[{\"delta\":{\"content\":\"lo\"}}]}",
+      "[DONE]"
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+
+    client
+      .transformStreaming(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000,
+        false,
+        1024
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("hello");
+  }
+
+  @Test
+  void shouldAccumulateStreamedContentDeltasThroughVertx() throws Exception {
+    String baseUrl = startEventStreamServer(
+      new CountDownLatch(0),
+      "{\"choices\":[{\"delta\":{\"content\":\"hel\"}}]}",
+      "{\"choices\":[{\"delta\":{\"content\":\"lo\"}}]}",
+      "[DONE]"
+    );
+    vertx = Vertx.vertx();
+    TransformerLlmClient client = new TransformerLlmClient();
+    client.useVertx(vertx);
+
+    client
+      .transformStreaming(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000,
+        false,
+        1024
+      )
+      .test()
+      .awaitDone(5, TimeUnit.SECONDS)
+      .assertValue("hello");
+  }
+
+  @Test
+  void shouldAbortStreamOnceContentExceedsLimit() throws Exception {
+    CountDownLatch neverReleased = new CountDownLatch(1);
+    String baseUrl = startEventStreamServer(
+      neverReleased,
+      "{\"choices\":[{\"delta\":{\"content\":\"0123456789\"}}]}",
+      "{\"choices\":[{\"delta\":{\"content\":\"0123456789\"}}]}"
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+
+    client
+      .transformStreaming(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        5000,
+        false,
+        15
+      )
+      .test()
+      .awaitDone(3, TimeUnit.SECONDS)
+      .assertError(TransformerLlmClient.LlmResponseTooLargeException.class);
+    neverReleased.countDown();
+  }
+
+  @Test
+  void shouldAbortStreamWhenDeadlineElapses() throws Exception {
+    CountDownLatch neverReleased = new CountDownLatch(1);
+    String baseUrl = startEventStreamServer(
+      neverReleased,
+      "{\"choices\":[{\"delta\":{\"content\":\"partial\"}}]}"
+    );
+    TransformerLlmClient client = new TransformerLlmClient();
+
+    client
+      .transformStreaming(
+        new ResolvedEndpoint(baseUrl, null, null, "gpt"),
+        "prompt",
+        "input",
+        200,
+        false,
+        0
+      )
+      .test()
+      .awaitDone(3, TimeUnit.SECONDS)
+      .assertError(TimeoutException.class);
+    neverReleased.countDown();
+  }
+
+  private String startEventStreamServer(
+    CountDownLatch holdOpenUntil,
+    String... events
+  ) throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+      exchange.sendResponseHeaders(200, 0);
+      for (String event : events) {
+        exchange
+          .getResponseBody()
+          .write(("data: " + event + "\n\n").getBytes(StandardCharsets.UTF_8));
+        exchange.getResponseBody().flush();
+      }
+      try {
+        holdOpenUntil.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.close();
+    });
+    server.start();
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+  }
+
+  private String startServer(int status, String body) throws Exception {
+    return startServer(
+      status,
+      body,
+      new CountDownLatch(0),
+      new AtomicInteger()
+    );
+  }
+
+  private String startServer(
+    int status,
+    String body,
+    CountDownLatch release,
+    AtomicInteger calls
+  ) throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      calls.incrementAndGet();
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getRequestBody().readAllBytes();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.sendResponseHeaders(status, bytes.length);
+      exchange.getResponseBody().write(bytes);
+      exchange.close();
+    });
+    server.start();
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+  }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.targeting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TargetPathTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Test
+  void shouldTreatBlankPathAsRoot() {
+    assertThat(TargetPath.compile(null).isRoot()).isTrue();
+    assertThat(TargetPath.compile("  $ ").isRoot()).isTrue();
+  }
+
+  @Test
+  void shouldRejectUnsupportedPaths() {
+    assertThatThrownBy(() -> TargetPath.compile("message")).isInstanceOf(
+      IllegalArgumentException.class
+    );
+    assertThatThrownBy(() -> TargetPath.compile("$.")).hasMessageContaining(
+      "cannot be empty"
+    );
+    assertThatThrownBy(() -> TargetPath.compile("$.a[x]")).hasMessageContaining(
+      "array index"
+    );
+    assertThatThrownBy(() -> TargetPath.compile("$.a[0")).isInstanceOf(
+      IllegalArgumentException.class
+    );
+  }
+
+  @Test
+  void shouldSelectAndReplaceArrayElementByIndex() throws Exception {
+    TargetPath path = TargetPath.compile("$.items[1].name");
+    JsonNode root = OBJECT_MAPPER.readTree(
+      "{\"items\":[{\"name\":\"a\"},{\"name\":\"b\"}]}"
+    );
+
+    assertThat(path.isDefinite()).isTrue();
+    assertThat(path.select(root)).containsExactly(TextNode.valueOf("b"));
+
+    path.replace(root, List.of(TextNode.valueOf("B")));
+    assertThat(root.toString()).isEqualTo(
+      "{\"items\":[{\"name\":\"a\"},{\"name\":\"B\"}]}"
+    );
+  }
+
+  @Test
+  void shouldSelectAndReplaceEveryWildcardMatchInOrder() throws Exception {
+    TargetPath path = TargetPath.compile("$.messages[*].content");
+    JsonNode root = OBJECT_MAPPER.readTree(
+      "{\"messages\":[{\"content\":\"x\"},{\"role\":\"r\"},{\"content\":\"y\"}]}"
+    );
+
+    assertThat(path.isDefinite()).isFalse();
+    assertThat(path.select(root)).containsExactly(
+      TextNode.valueOf("x"),
+      TextNode.valueOf("y")
+    );
+
+    path.replace(root, List.of(TextNode.valueOf("X"), TextNode.valueOf("Y")));
+    assertThat(root.toString()).isEqualTo(
+      "{\"messages\":[{\"content\":\"X\"},{\"role\":\"r\"},{\"content\":\"Y\"}]}"
+    );
+  }
+
+  @Test
+  void shouldRejectReplacementCountMismatch() throws Exception {
+    TargetPath path = TargetPath.compile("$.tags[*]");
+    JsonNode root = OBJECT_MAPPER.readTree("{\"tags\":[\"a\",\"b\"]}");
+
+    assertThatThrownBy(() ->
+      path.replace(root, List.of(TextNode.valueOf("A")))
+    ).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldReturnNoMatchWhenPathDoesNotExist() throws Exception {
+    JsonNode root = OBJECT_MAPPER.readTree("{\"items\":[]}");
+
+    assertThat(TargetPath.compile("$.items[0]").select(root)).isEmpty();
+    assertThat(TargetPath.compile("$.other.field").select(root)).isEmpty();
+  }
+
+  @Test
+  void shouldLocateByteRangesOfMatchesWhileStreaming() throws Exception {
+    String json =
+      "{\"a\": 12, \"items\": [{\"v\": \"é\"}, {\"v\": 345}, " +
+      "{\"v\": {\"x\": [1]}}], \"z\": true}";
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+    List<TargetPath.Match> matches = TargetPath.compile(
+      "$.items[*].v"
+    ).locate(OBJECT_MAPPER.createParser(bytes));
+
+    assertThat(matches)
+      .extracting(match ->
+        new String(
+          bytes,
+          (int) match.start(),
+          (int) (match.end() - match.start()),
+          StandardCharsets.UTF_8
+        )
+      )
+      .containsExactly("\"é\"", "345", "{\"x\": [1]}");
+    assertThat(matches.get(1).value().asInt()).isEqualTo(345);
+  }
+
+  @Test
+  void shouldRejectMalformedDocumentWhileStreaming() {
+    assertThatThrownBy(() ->
+      TargetPath.compile("$.a").locate(
+        OBJECT_MAPPER.createParser("{\"a\": 1, \"b\": }")
+      )
+    ).isInstanceOf(IOException.class);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.targeting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares targeted replacement on a deep copy with in-place replacement on
+ * a 1 MB document. Excluded from the default build; run with
+ * {@code mvn test -DexcludedGroups= -Dgroups=benchmark}.
+ */
+@Tag("benchmark")
+class TargetedReplacementBenchmarkTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final int WARMUP_ITERATIONS = 200;
+  private static final int MEASURED_ITERATIONS = 500;
+  private static final double MAX_IN_PLACE_RATIO = 0.8;
+
+  @Test
+  void shouldReplaceInPlaceCheaperThanOnDeepCopy() throws Exception {
+    byte[] document = oneMegabyteDocument();
+    TargetPath path = TargetPath.compile("$.ticket.description");
+    List<JsonNode> replacement = List.of(TextNode.valueOf("rewritten"));
+
+    double copiedBytes = allocatedBytesPerOp(document, root ->
+      path.replace(root.deepCopy(), replacement)
+    );
+    double inPlaceBytes = allocatedBytesPerOp(document, root ->
+      path.replace(root, replacement)
+    );
+
+    // The copy allocates a second tree on top of the parse and the write.
+    assertThat(inPlaceBytes).isLessThan(copiedBytes * MAX_IN_PLACE_RATIO);
+  }
+
+  private static double allocatedBytesPerOp(
+    byte[] document,
+    Replacement replacement
+  ) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      run(document, replacement);
+    }
+
+    com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().threadId();
+    long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      run(document, replacement);
+    }
+    long allocated =
+      threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    return (double) allocated / MEASURED_ITERATIONS;
+  }
+
+  private static void run(byte[] document, Replacement replacement)
+    throws Exception {
+    JsonNode root = OBJECT_MAPPER.readTree(document);
+    byte[] out = OBJECT_MAPPER.writeValueAsBytes(replacement.apply(root));
+    if (out.length == 0) {
+      throw new IllegalStateException();
+    }
+  }
+
+  private static byte[] oneMegabyteDocument() throws Exception {
+    ObjectNode root = OBJECT_MAPPER.createObjectNode();
+    root.putObject("ticket").put("description", "original");
+    ArrayNode events = root.putArray("events");
+    int i = 0;
+    while (OBJECT_MAPPER.writeValueAsBytes(root).length < 1024 * 1024) {
+      for (int j = 0; j < 500; j++, i++) {
+        events
+          .addObject()
+          .put("id", i)
+          .put("type", "comment")
+          .put("body", "lorem ipsum dolor sit amet " + i);
+      }
+    }
+    return OBJECT_MAPPER.writeValueAsBytes(root);
+  }
+
+  @FunctionalInterface
+  private interface Replacement {
+    JsonNode apply(JsonNode root);
+  }
+}
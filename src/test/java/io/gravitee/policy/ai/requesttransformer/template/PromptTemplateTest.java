@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.ai.requesttransformer.template;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.gravitee.el.TemplateEngine;
+import org.junit.jupiter.api.Test;
+
+class PromptTemplateTest {
+
+  @Test
+  void shouldReturnStaticPromptWithoutTemplateEngine() {
+    TemplateEngine templateEngine = mock(TemplateEngine.class);
+    PromptTemplate template = PromptTemplate.compile("Rewrite in French.");
+
+    assertThat(template.isStatic()).isTrue();
+    assertThat(template.render(templateEngine)).isSameAs(template.template());
+    assertThat(template.render(null)).isEqualTo("Rewrite in French.");
+    verifyNoInteractions(templateEngine);
+  }
+
+  @Test
+  void shouldRenderDynamicPromptThroughTemplateEngine() {
+    TemplateEngine templateEngine = mock(TemplateEngine.class);
+    when(
+      templateEngine.convert("Answer in {#request.headers['lang'][0]}.")
+    ).thenReturn("Answer in fr.");
+    PromptTemplate template = PromptTemplate.compile(
+      "Answer in {#request.headers['lang'][0]}."
+    );
+
+    assertThat(template.isStatic()).isFalse();
+    assertThat(template.render(templateEngine)).isEqualTo("Answer in fr.");
+    assertThatThrownBy(() -> template.render(null)).isInstanceOf(
+      IllegalStateException.class
+    );
+  }
+
+  @Test
+  void shouldTreatMissingPromptAsStatic() {
+    PromptTemplate template = PromptTemplate.compile(null);
+
+    assertThat(template.isStatic()).isTrue();
+    assertThat(template.render(null)).isNull();
+    assertThat(PromptTemplate.compile("cost: ${price}").isStatic()).isFalse();
+  }
+}